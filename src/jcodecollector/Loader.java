@@ -15,18 +15,33 @@
  */
 package jcodecollector;
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
+import jcodecollector.cli.CommandLine;
 import jcodecollector.data.DBMS;
 import jcodecollector.data.settings.ApplicationSettingsManager;
 import jcodecollector.gui.MainFrame;
+import jcodecollector.server.SnippetServer;
 import jcodecollector.util.OS;
 
 public class Loader {
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            startServer(args);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--cli")) {
+            CommandLine.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         try {
             if (OS.isMacOSX()) {
                 System.setProperty("apple.laf.useScreenMenuBar", "true");
@@ -44,17 +59,15 @@ public class Loader {
 
         // controllo se e' necessario aggiornare il database in quando quello
         // nuovo non e' compatibile con quello della versione 2.0
-        if (DBMS.getInstance().databaseMustBeUpdate()) {
+        if (DBMS.getInstance().isLegacyDatabase()) {
             JOptionPane.showMessageDialog(null, "<html><font size=-1>jCodeCollector database <b>must be update</b>. " + "Clicking OK the operation will be performed.<br><br>"
                     + "<b>Warning</b>: Syntaxes from previous version are not compatible and will be removed.<br>" + "For this reason all snippets will be set to \"no syntax\". I'm sorry.<br>"
                     + "You can quickly fix your snippets right-clicking on a category and choosing " + "<i>Set Syntax->syntax</i></font></html>", "jCodeCollector - Migration Assistant", JOptionPane.INFORMATION_MESSAGE);
 
-            if (!DBMS.getInstance().updateDatabase()) {
-                System.err.println("error updating database");
-                System.exit(1);
-            }
         }
 
+        openDatabase();
+
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 MainFrame mainFrame = new MainFrame();
@@ -74,4 +87,75 @@ public class Loader {
         });
     }
 
+    /**
+     * Porta il database all'ultima versione e apre l'indice di ricerca, che
+     * viene salvato alla chiusura dell'applicazione.
+     */
+    private static void openDatabase() {
+        // porto lo schema del database all'ultima versione
+        if (!DBMS.getInstance().migrateSchema()) {
+            System.err.println("error updating database");
+            System.exit(1);
+        }
+
+        // apro l'indice usato per la ricerca degli snippet e lo salvo alla
+        // chiusura dell'applicazione
+        if (!DBMS.getInstance().openSearchIndex()) {
+            System.err.println("error opening search index");
+        }
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                DBMS.getInstance().closeSearchIndex();
+            }
+        });
+    }
+
+    /**
+     * Avvia il server HTTP/JSON senza interfaccia grafica:
+     * <code>--server [porta]</code>.
+     */
+    private static void startServer(String[] args) {
+        int port = SnippetServer.DEFAULT_PORT;
+        if (args.length > 1) {
+            try {
+                port = Integer.parseInt(args[1]);
+            } catch (NumberFormatException ex) {
+                System.err.println("invalid port: " + args[1]);
+                System.exit(1);
+            }
+        }
+
+        // il server non usa l'interfaccia grafica: anche gli errori del
+        // database vengono scritti sulla console
+        System.setProperty("java.awt.headless", "true");
+        ApplicationSettingsManager.readApplicationSettings();
+
+        if (DBMS.getInstance().isLegacyDatabase()) {
+            System.out.println("updating database from version 2.0: syntaxes will be removed");
+        }
+
+        openDatabase();
+
+        final SnippetServer server;
+        try {
+            server = new SnippetServer(port);
+        } catch (IOException ex) {
+            System.err.println("cannot start server on port " + port + ": " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        // il server viene fermato prima di salvare l'indice di ricerca
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                server.stop(1);
+            }
+        });
+
+        server.start();
+        System.out.println("jCodeCollector server listening on http://" + server.getAddress().getHostName() + ":" + port
+                + SnippetServer.CONTEXT);
+    }
+
 }
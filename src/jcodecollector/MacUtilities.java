@@ -62,7 +62,11 @@ public class MacUtilities {
         // CMD+Q
         application.setQuitHandler(new QuitHandler() {
             public void handleQuitRequestWith(QuitEvent e, QuitResponse r) {
-                mainFrame.prepareAndSaveSettings();
+                if (!mainFrame.prepareAndSaveSettings()) {
+                    r.cancelQuit();
+                    return;
+                }
+
                 System.exit(0);
             }
         });
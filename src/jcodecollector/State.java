@@ -18,6 +18,7 @@ package jcodecollector;
 import java.util.ArrayList;
 
 import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
 import jcodecollector.data.Controller;
 import jcodecollector.data.DBMS;
 import jcodecollector.listener.CategoryListener;
@@ -86,8 +87,11 @@ public class State implements SnippetListener, CategoryListener, CountListener,
 	/** Lo snippet precedente. */
 	private Snippet previousSnippet;
 
-	/** Se <code>true</code> indica che la ricerca e' attiva. */
-	private boolean searchActive;
+	/**
+	 * Se <code>true</code> indica che la ricerca e' attiva. Viene letto anche
+	 * dai thread di {@link jcodecollector.data.AsyncController}.
+	 */
+	private volatile boolean searchActive;
 
 	/** Istanzia i vari array di listener. */
 	private State() {
@@ -189,8 +193,8 @@ public class State implements SnippetListener, CategoryListener, CountListener,
 		}
 	}
 
-	/** @see jcodecollector.listener.SnippetListener#snippetRemoved(Snippet) */
-	public void snippetRemoved(Snippet snippet) {
+	/** @see jcodecollector.listener.SnippetListener#snippetRemoved(SnippetHeader) */
+	public void snippetRemoved(SnippetHeader snippet) {
 		for (SnippetListener listener : snippetListeners) {
 			listener.snippetRemoved(snippet);
 		}
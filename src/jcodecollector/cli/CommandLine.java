@@ -0,0 +1,429 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.data.DBMS;
+import jcodecollector.data.InsertResult;
+import jcodecollector.data.SearchFilter;
+import jcodecollector.data.SearchHit;
+import jcodecollector.data.SchemaMigrator;
+import jcodecollector.data.settings.ApplicationSettings;
+import jcodecollector.data.settings.ApplicationSettingsManager;
+import jcodecollector.io.FileManager;
+import jcodecollector.io.ImportPipeline;
+import jcodecollector.io.PackageManager;
+import jcodecollector.server.Json;
+
+/**
+ * Esegue le operazioni sul database senza interfaccia grafica, ad esempio da
+ * uno script pianificato:
+ * 
+ * <pre>
+ * [--db cartella] import pacchetto
+ * [--db cartella] export pacchetto [categoria]
+ * [--db cartella] search [--limit n] parola...
+ * [--db cartella] backup cartella
+ * [--db cartella] stats
+ * [--db cartella] check
+ * [--db cartella] bench-update [aggiornamenti [tag]]
+ * </pre>
+ * 
+ * Senza <code>--db</code> viene usato il database delle impostazioni, tranne
+ * che per <code>bench-update</code>, che usa un database temporaneo.
+ * 
+ * Il risultato di ogni comando viene scritto sullo standard output come
+ * documento JSON; i messaggi diagnostici vengono scritti sullo standard
+ * error. Il codice di uscita e' 0 se il comando ha successo, 1 se fallisce e
+ * 2 se gli argomenti non sono validi.
+ * 
+ * @author Alessandro Cocco
+ */
+public class CommandLine {
+
+    /** Il comando e' stato eseguito con successo. */
+    public static final int EXIT_OK = 0;
+
+    /** Il comando e' fallito. */
+    public static final int EXIT_FAILURE = 1;
+
+    /** Gli argomenti non sono validi. */
+    public static final int EXIT_USAGE = 2;
+
+    /** Lo stream su cui scrivere i risultati. */
+    private PrintStream out;
+
+    private CommandLine(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        // nessuna classe AWT deve aprire una connessione al display
+        System.setProperty("java.awt.headless", "true");
+
+        // lo standard output e' riservato ai risultati: i messaggi del resto
+        // dell'applicazione vanno sullo standard error
+        PrintStream out = System.out;
+        System.setOut(System.err);
+
+        System.exit(new CommandLine(out).run(args));
+    }
+
+    /**
+     * Esegue il comando indicato.
+     * 
+     * @param args Gli argomenti della riga di comando.
+     * @return il codice di uscita
+     */
+    private int run(String[] args) {
+        List<String> arguments = new ArrayList<String>(Arrays.asList(args));
+        String database = null;
+
+        if (arguments.size() >= 2 && arguments.get(0).equals("--db")) {
+            database = arguments.remove(1);
+            arguments.remove(0);
+        }
+
+        if (arguments.isEmpty()) {
+            return usage();
+        }
+
+        String command = arguments.remove(0);
+
+        ApplicationSettingsManager.readApplicationSettings();
+
+        // il benchmark crea e cancella snippet: senza --db viene eseguito su
+        // un database temporaneo, mai su quello dell'utente
+        File temporary = null;
+        if (database == null && command.equals("bench-update")) {
+            temporary = createTemporaryDirectory();
+            if (temporary == null) {
+                return fail("cannot create temporary database");
+            }
+
+            database = temporary.getPath();
+            ApplicationSettings.getInstance().setNetworkServerEnabled(false);
+        }
+
+        if (database != null) {
+            ApplicationSettings.getInstance().setDatabasePath(new File(database).getAbsolutePath());
+        }
+
+        try {
+            return execute(command, arguments);
+        } finally {
+            if (temporary != null && !FileManager.deleteDirectory(temporary)) {
+                System.err.println("cannot delete temporary database " + temporary);
+            }
+        }
+    }
+
+    /**
+     * Esegue il comando indicato sul database gia' configurato.
+     * 
+     * @param command Il comando.
+     * @param arguments Gli argomenti del comando.
+     * @return il codice di uscita
+     */
+    private int execute(String command, List<String> arguments) {
+        if (!DBMS.getInstance().migrateSchema()) {
+            return fail("error updating database");
+        }
+
+        try {
+            if (command.equals("import") && arguments.size() == 1) {
+                return importPackage(new File(arguments.get(0)));
+            } else if (command.equals("export") && (arguments.size() == 1 || arguments.size() == 2)) {
+                return exportPackage(new File(arguments.get(0)), arguments.size() == 2 ? arguments.get(1) : null);
+            } else if (command.equals("search") && !arguments.isEmpty()) {
+                return search(arguments);
+            } else if (command.equals("backup") && arguments.size() == 1) {
+                return backup(new File(arguments.get(0)));
+            } else if (command.equals("stats") && arguments.isEmpty()) {
+                return stats();
+            } else if (command.equals("check") && arguments.isEmpty()) {
+                return check();
+            } else if (command.equals("bench-update") && arguments.size() <= 2) {
+                return benchUpdate(arguments);
+            }
+
+            return usage();
+        } finally {
+            // l'indice viene aperto solo dalla ricerca
+            DBMS.getInstance().closeSearchIndex();
+        }
+    }
+
+    private int importPackage(File file) {
+        if (!file.isFile()) {
+            return fail("file not found: " + file);
+        }
+
+        ImportPipeline pipeline = new ImportPipeline(file);
+        int read;
+
+        try {
+            read = pipeline.run();
+        } catch (InterruptedException ex) {
+            return fail("import interrupted");
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+            return fail("import failed: " + ex);
+        }
+
+        if (read < 0) {
+            return fail("invalid package: " + file);
+        }
+
+        InsertResult result = pipeline.getResult();
+        StringBuilder failures = new StringBuilder("{");
+        for (Map.Entry<String, String> entry : result.getFailures().entrySet()) {
+            if (failures.length() > 1) {
+                failures.append(',');
+            }
+            failures.append(Json.quote(entry.getKey())).append(':').append(Json.quote(entry.getValue()));
+        }
+        failures.append('}');
+
+        out.println("{\"read\":" + read + ",\"inserted\":" + result.getInserted() + ",\"failed\":" + result.getFailed()
+                + ",\"failures\":" + failures + "}");
+        return result.getFailed() == 0 ? EXIT_OK : EXIT_FAILURE;
+    }
+
+    private int exportPackage(File file, String category) {
+        if (!PackageManager.exportSnippets(file, category)) {
+            return fail("cannot export snippets to " + file);
+        }
+
+        out.println("{\"file\":" + Json.quote(file.getAbsolutePath()) + ",\"category\":" + Json.quote(category) + "}");
+        return EXIT_OK;
+    }
+
+    private int search(List<String> arguments) {
+        int limit = 0;
+
+        if (arguments.get(0).equals("--limit")) {
+            if (arguments.size() < 3) {
+                return usage();
+            }
+
+            try {
+                limit = Integer.parseInt(arguments.get(1));
+            } catch (NumberFormatException ex) {
+                return usage();
+            }
+
+            arguments = arguments.subList(2, arguments.size());
+        }
+
+        String[] keywords = arguments.toArray(new String[] {});
+        ArrayList<SearchHit> hits = DBMS.getInstance().rank(keywords, SearchFilter.getInstance().countSearchTypeEnabled(), limit);
+        if (hits == null) {
+            return fail("search failed");
+        }
+
+        StringBuilder builder = new StringBuilder("[");
+        for (SearchHit hit : hits) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append("{\"name\":").append(Json.quote(hit.getName()));
+            builder.append(",\"category\":").append(Json.quote(hit.getCategory()));
+            builder.append(",\"score\":").append(hit.getScore()).append('}');
+        }
+
+        out.println(builder.append(']'));
+        return EXIT_OK;
+    }
+
+    private int backup(File directory) {
+        if (!DBMS.getInstance().copyDatabase(directory.getAbsolutePath())) {
+            return fail("cannot backup database to " + directory);
+        }
+
+        out.println("{\"backup\":" + Json.quote(new File(directory, "jCodeCollector").getAbsolutePath()) + "}");
+        return EXIT_OK;
+    }
+
+    private int stats() {
+        DBMS dbms = DBMS.getInstance();
+
+        LinkedHashMap<String, Object> stats = new LinkedHashMap<String, Object>();
+        stats.put("database", ApplicationSettings.getInstance().getDatabasePath() + "jCodeCollector");
+        stats.put("schemaVersion", dbms.getSchemaVersion());
+        stats.put("latestSchemaVersion", SchemaMigrator.getLatestVersion());
+        stats.put("snippets", dbms.countSnippets());
+        stats.put("categories", dbms.countCategories());
+        stats.put("tags", dbms.countTags());
+
+        out.println(toJson(stats));
+        return EXIT_OK;
+    }
+
+    private int check() {
+        LinkedHashMap<String, String> tables = DBMS.getInstance().checkTables();
+        if (tables == null) {
+            return fail("cannot check database");
+        }
+
+        boolean valid = true;
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, String> entry : tables.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(Json.quote(entry.getKey())).append(':');
+            builder.append(entry.getValue() == null ? "\"ok\"" : Json.quote(entry.getValue()));
+            valid &= entry.getValue() == null;
+        }
+        builder.append('}');
+
+        out.println("{\"valid\":" + valid + ",\"tables\":" + builder + "}");
+        return valid ? EXIT_OK : EXIT_FAILURE;
+    }
+
+    /**
+     * Misura il costo dell'aggiornamento di uno snippet con molti tag: crea
+     * uno snippet temporaneo, lo aggiorna piu' volte sostituendo ogni volta
+     * meta' dei suoi tag e lo elimina. Senza <code>--db</code> il comando
+     * usa un database temporaneo.
+     */
+    private int benchUpdate(List<String> arguments) {
+        int updates = 100;
+        int tags = 50;
+
+        try {
+            if (arguments.size() > 0) {
+                updates = Integer.parseInt(arguments.get(0));
+            }
+            if (arguments.size() > 1) {
+                tags = Integer.parseInt(arguments.get(1));
+            }
+        } catch (NumberFormatException ex) {
+            return usage();
+        }
+
+        if (updates < 1 || tags < 0) {
+            return usage();
+        }
+
+        DBMS dbms = DBMS.getInstance();
+        String name = "bench-update-" + UUID.randomUUID();
+        Snippet snippet = new Snippet(-1, "Benchmark", name, benchTags(0, tags), "", "", "", false);
+        if (!dbms.insertNewSnippet(snippet)) {
+            return fail("cannot create snippet " + name);
+        }
+
+        try {
+            long roundTrips = dbms.getUpdateRoundTrips();
+            long start = System.nanoTime();
+
+            for (int i = 1; i <= updates; i++) {
+                Snippet next = new Snippet(-1, "Benchmark", name, benchTags(i * (tags / 2), tags), "update " + i, "", "", false);
+                if (!dbms.updateSnippet(snippet, next)) {
+                    return fail("cannot update snippet " + name);
+                }
+                snippet = next;
+            }
+
+            long elapsed = System.nanoTime() - start;
+            roundTrips = dbms.getUpdateRoundTrips() - roundTrips;
+
+            LinkedHashMap<String, Object> stats = new LinkedHashMap<String, Object>();
+            stats.put("updates", updates);
+            stats.put("tags", tags);
+            stats.put("roundTrips", roundTrips);
+            stats.put("roundTripsPerUpdate", (double) roundTrips / updates);
+            stats.put("millisPerUpdate", elapsed / 1000000.0 / updates);
+
+            out.println(toJson(stats));
+            return EXIT_OK;
+        } finally {
+            dbms.removeSnippet(name);
+        }
+    }
+
+    /** Restituisce <code>count</code> tag numerati a partire da <code>first</code>. */
+    private static String[] benchTags(int first, int count) {
+        String[] tags = new String[count];
+        for (int i = 0; i < count; i++) {
+            tags[i] = "tag" + (first + i);
+        }
+
+        return tags;
+    }
+
+    /**
+     * Crea una cartella vuota nella cartella dei file temporanei.
+     * 
+     * @return la cartella creata, oppure <code>null</code> in caso di errore
+     */
+    private static File createTemporaryDirectory() {
+        try {
+            File directory = File.createTempFile("jcc-bench", "");
+            if (directory.delete() && directory.mkdir()) {
+                return directory;
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+
+        return null;
+    }
+
+    /** Scrive un oggetto JSON con valori numerici o stringhe. */
+    private static String toJson(Map<String, Object> map) {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(Json.quote(entry.getKey())).append(':');
+
+            Object value = entry.getValue();
+            builder.append(value instanceof Number ? value.toString() : Json.quote(String.valueOf(value)));
+        }
+
+        return builder.append('}').toString();
+    }
+
+    private int fail(String message) {
+        out.println("{\"error\":" + Json.quote(message) + "}");
+        return EXIT_FAILURE;
+    }
+
+    private int usage() {
+        System.err.println("usage: [--db directory] import package");
+        System.err.println("       [--db directory] export package [category]");
+        System.err.println("       [--db directory] search [--limit n] keyword...");
+        System.err.println("       [--db directory] backup directory");
+        System.err.println("       [--db directory] stats");
+        System.err.println("       [--db directory] check");
+        System.err.println("       [--db directory] bench-update [updates [tags]]");
+        return EXIT_USAGE;
+    }
+
+}
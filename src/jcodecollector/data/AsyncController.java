@@ -0,0 +1,294 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.swing.SwingUtilities;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
+import jcodecollector.util.ExecutorFactory;
+
+/**
+ * La controparte asincrona di {@link Controller}. Ogni metodo esegue il
+ * corrispondente metodo di {@link Controller} in background e restituisce
+ * subito un {@link Future}; al termine il {@link Callback} indicato (se non
+ * e' <code>null</code>) viene eseguito sull'EDT, dove puo' aggiornare
+ * l'interfaccia.
+ * <p>
+ * Le letture vengono eseguite in parallelo da un thread per richiesta
+ * (virtual thread se la JVM li supporta), mentre le modifiche vengono
+ * accodate al thread di scrittura di {@link DBMS} e vengono quindi eseguite
+ * una alla volta, nell'ordine in cui sono state richieste.
+ * 
+ * @author Alessandro Cocco
+ */
+public class AsyncController {
+
+    /**
+     * Riceve sull'EDT il risultato di un'operazione asincrona.
+     * 
+     * @param <T> Il tipo del risultato.
+     */
+    public static abstract class Callback<T> {
+
+        /**
+         * Riceve il risultato dell'operazione.
+         * 
+         * @param result Il risultato restituito da {@link Controller}.
+         */
+        public abstract void succeeded(T result);
+
+        /**
+         * Riceve l'eccezione sollevata durante l'operazione. Per default
+         * l'eccezione viene solo stampata.
+         * 
+         * @param cause L'eccezione sollevata.
+         */
+        public void failed(Throwable cause) {
+            cause.printStackTrace();
+        }
+    }
+
+    /** Un'operazione che al termine passa il risultato al callback sull'EDT. */
+    private static class Task<T> extends FutureTask<T> {
+        private final Callback<T> callback;
+
+        public Task(Callable<T> callable, Callback<T> callback) {
+            super(callable);
+            this.callback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if (callback == null || isCancelled()) {
+                return;
+            }
+
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    T result;
+
+                    try {
+                        result = get();
+                    } catch (InterruptedException ex) {
+                        // l'operazione e' gia' terminata: non dovrebbe
+                        // succedere
+                        callback.failed(ex);
+                        return;
+                    } catch (ExecutionException ex) {
+                        callback.failed(ex.getCause());
+                        return;
+                    }
+
+                    callback.succeeded(result);
+                }
+            });
+        }
+    }
+
+    private static AsyncController asyncController = new AsyncController();
+    private static Controller controller = Controller.getInstance();
+
+    /** Esegue le letture, ciascuna su un proprio thread. */
+    private final ExecutorService readers = ExecutorFactory.newThreadPerTaskExecutor("jcc-read");
+
+    private AsyncController() {
+        // singleton
+    }
+
+    public static AsyncController getInstance() {
+        return asyncController;
+    }
+
+    /** Esegue una lettura in parallelo alle altre. */
+    private <T> Future<T> read(Callable<T> callable, Callback<T> callback) {
+        Task<T> task = new Task<T>(callable, callback);
+        readers.execute(task);
+        return task;
+    }
+
+    /** Accoda una modifica al thread di scrittura del database. */
+    private <T> Future<T> write(Callable<T> callable, Callback<T> callback) {
+        Task<T> task = new Task<T>(callable, callback);
+        DBMS.getInstance().submit(Executors.callable(task));
+        return task;
+    }
+
+    /** @see Controller#getSnippetHeader(String) */
+    public Future<SnippetHeader> getSnippetHeader(final String name, Callback<SnippetHeader> callback) {
+        return read(new Callable<SnippetHeader>() {
+            public SnippetHeader call() {
+                return controller.getSnippetHeader(name);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#getSnippet(String) */
+    public Future<Snippet> getSnippet(final String name, Callback<Snippet> callback) {
+        return read(new Callable<Snippet>() {
+            public Snippet call() {
+                return controller.getSnippet(name);
+            }
+        }, callback);
+    }
+
+    /**
+     * Legge l'intestazione e poi il contenuto dello snippet indicato (vedi
+     * {@link Controller#getSnippetHeader(String)} e
+     * {@link Controller#loadSnippet(SnippetHeader)}).
+     * 
+     * @param name Il nome dello snippet.
+     * @param callback Riceve lo snippet completo, oppure <code>null</code> se
+     *        lo snippet non esiste.
+     * @return il risultato dell'operazione
+     */
+    public Future<Snippet> loadSnippet(final String name, Callback<Snippet> callback) {
+        return read(new Callable<Snippet>() {
+            public Snippet call() {
+                SnippetHeader header = controller.getSnippetHeader(name);
+                return header == null ? null : controller.loadSnippet(header);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#getSnippetsName(String) */
+    public Future<ArrayList<String>> getSnippetsName(final String category, Callback<ArrayList<String>> callback) {
+        return read(new Callable<ArrayList<String>>() {
+            public ArrayList<String> call() {
+                return controller.getSnippetsName(category);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#getCategories() */
+    public Future<ArrayList<String>> getCategories(Callback<ArrayList<String>> callback) {
+        return read(new Callable<ArrayList<String>>() {
+            public ArrayList<String> call() {
+                return controller.getCategories();
+            }
+        }, callback);
+    }
+
+    /** @see Controller#getCatalog() */
+    public Future<LinkedHashMap<String, ArrayList<String>>> getCatalog(Callback<LinkedHashMap<String, ArrayList<String>>> callback) {
+        return read(new Callable<LinkedHashMap<String, ArrayList<String>>>() {
+            public LinkedHashMap<String, ArrayList<String>> call() {
+                return controller.getCatalog();
+            }
+        }, callback);
+    }
+
+    /** @see Controller#countSnippets() */
+    public Future<Integer> countSnippets(Callback<Integer> callback) {
+        return read(new Callable<Integer>() {
+            public Integer call() {
+                return controller.countSnippets();
+            }
+        }, callback);
+    }
+
+    /** @see Controller#countCategories() */
+    public Future<Integer> countCategories(Callback<Integer> callback) {
+        return read(new Callable<Integer>() {
+            public Integer call() {
+                return controller.countCategories();
+            }
+        }, callback);
+    }
+
+    /** @see Controller#insertNewSnippet(Snippet) */
+    public Future<Boolean> insertNewSnippet(final Snippet newSnippet, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.insertNewSnippet(newSnippet);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#updateSnippet(Snippet, Snippet) */
+    public Future<Boolean> updateSnippet(final Snippet oldSnippet, final Snippet newSnippet, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.updateSnippet(oldSnippet, newSnippet);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#removeSnippet(String) */
+    public Future<Boolean> removeSnippet(final String name, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.removeSnippet(name);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#moveSnippet(String, String) */
+    public Future<Boolean> moveSnippet(final String name, final String category, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.moveSnippet(name, category);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#lockSnippet(String, boolean) */
+    public Future<Boolean> lockSnippet(final String name, final boolean locked, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.lockSnippet(name, locked);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#removeCategory(String) */
+    public Future<Boolean> removeCategory(final String name, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.removeCategory(name);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#renameCategory(String, String) */
+    public Future<Boolean> renameCategory(final String oldName, final String newName, Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.renameCategory(oldName, newName);
+            }
+        }, callback);
+    }
+
+    /** @see Controller#updateSyntax(String, String, String) */
+    public Future<Boolean> updateSyntax(final String newSyntax, final String category, final String selectedSnippet,
+            Callback<Boolean> callback) {
+        return write(new Callable<Boolean>() {
+            public Boolean call() {
+                return controller.updateSyntax(newSyntax, category, selectedSnippet);
+            }
+        }, callback);
+    }
+
+}
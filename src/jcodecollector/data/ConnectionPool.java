@@ -0,0 +1,192 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Un insieme limitato di connessioni allo stesso database. Le connessioni
+ * vengono aperte solo quando servono e, una volta restituite, riutilizzate
+ * dalle richieste successive; quando tutte le connessioni sono in uso le
+ * richieste attendono che una venga restituita.
+ * 
+ * @author Alessandro Cocco
+ */
+public class ConnectionPool {
+
+    /** Il tempo massimo di attesa di una connessione libera, in secondi. */
+    public static final int ACQUIRE_TIMEOUT = 30;
+
+    /** L'URL JDBC del database. */
+    private String url;
+
+    /** Le connessioni aperte e non in uso. */
+    private LinkedList<Connection> idle;
+
+    /** I permessi corrispondono alle connessioni che si possono ancora usare. */
+    private Semaphore permits;
+
+    /** Il numero massimo di connessioni. */
+    private int maxSize;
+
+    /** <code>true</code> dopo la chiamata a {@link #close()}. */
+    private boolean closed = false;
+
+    /**
+     * Crea un pool di connessioni al database indicato. Nessuna connessione
+     * viene aperta finche' non viene richiesta.
+     * 
+     * @param url L'URL JDBC del database.
+     * @param maxSize Il numero massimo di connessioni aperte
+     *        contemporaneamente.
+     */
+    public ConnectionPool(String url, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("\"maxSize\" must be positive");
+        }
+
+        this.url = url;
+        this.maxSize = maxSize;
+        this.idle = new LinkedList<Connection>();
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Restituisce una connessione libera, aprendone una nuova se necessario.
+     * La connessione va restituita con {@link #release(Connection)}.
+     * 
+     * @return una connessione in auto-commit
+     * @throws SQLException se la connessione non puo' essere aperta o se
+     *         nessuna connessione si libera entro {@link #ACQUIRE_TIMEOUT}
+     *         secondi
+     */
+    public Connection acquire() throws SQLException {
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT, TimeUnit.SECONDS)) {
+                throw new SQLException("no connection available after " + ACQUIRE_TIMEOUT + " seconds");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while waiting for a connection");
+        }
+
+        try {
+            Connection connection = null;
+
+            synchronized (this) {
+                if (closed) {
+                    throw new SQLException("connection pool closed");
+                }
+
+                connection = idle.poll();
+            }
+
+            if (connection == null || connection.isClosed()) {
+                connection = DriverManager.getConnection(url);
+            }
+
+            return connection;
+        } catch (SQLException ex) {
+            permits.release();
+            throw ex;
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Restituisce al pool una connessione ottenuta con {@link #acquire()}.
+     * Un'eventuale transazione lasciata aperta viene annullata.
+     * 
+     * @param connection La connessione da restituire.
+     */
+    public void release(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        boolean reusable = false;
+
+        try {
+            if (!connection.isClosed()) {
+                if (!connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                reusable = true;
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+
+        synchronized (this) {
+            if (reusable && !closed) {
+                idle.add(connection);
+                connection = null;
+            }
+        }
+
+        // la connessione non e' piu' utilizzabile (o il pool e' chiuso)
+        close(connection);
+        permits.release();
+    }
+
+    /**
+     * Restituisce il numero massimo di connessioni del pool.
+     * 
+     * @return il numero massimo di connessioni del pool
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Chiude le connessioni libere e impedisce di ottenerne altre. Le
+     * connessioni in uso vengono chiuse quando vengono restituite.
+     */
+    public void close() {
+        LinkedList<Connection> connections;
+
+        synchronized (this) {
+            closed = true;
+            connections = new LinkedList<Connection>(idle);
+            idle.clear();
+        }
+
+        for (Connection connection : connections) {
+            close(connection);
+        }
+    }
+
+    private static void close(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+}
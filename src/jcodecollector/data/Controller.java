@@ -16,11 +16,13 @@
 package jcodecollector.data;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
 import jcodecollector.State;
 import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
 
 public class Controller {
     private static Controller controller = new Controller();
@@ -28,33 +30,111 @@ public class Controller {
     private static SearchResults searchManager = SearchResults.getInstance();
     private static SearchFilter filters = SearchFilter.getInstance();
 
+    /** Gli snippet letti di recente (al massimo 2.500.000 caratteri). */
+    private static SnippetCache cache = new SnippetCache(2500000L);
+
+    /** Le modifiche agli snippet non ancora scritte nel database. */
+    private static SaveQueue saveQueue = new SaveQueue();
+
     private Controller() {
-        // do nothing
+        // la cache scarta gli snippet modificati ascoltando le notifiche
+        State.getInstance().addSnippetListener(cache);
+        State.getInstance().addCategoryListener(cache);
     }
 
     public static Controller getInstance() {
         return controller;
     }
 
+    /* Le modifiche scartano gli snippet dalla cache sia prima sia dopo la
+     * scrittura nel database: una lettura concorrente potrebbe aver letto lo
+     * snippet prima della modifica e inserirlo in cache dopo la prima
+     * invalidazione (vedi SnippetCache#put(Snippet, long)). */
+
     public boolean removeSnippet(String name) {
-        return State.getInstance().isSearchActive() ? searchManager.removeSnippet(name) : dbms.removeSnippet(name);
+        saveQueue.flush();
+        cache.remove(name);
+        boolean success = State.getInstance().isSearchActive() ? searchManager.removeSnippet(name) : dbms.removeSnippet(name);
+        cache.remove(name);
+        return success;
     }
 
     public boolean updateSnippet(Snippet oldSnippet, Snippet newSnippet) {
-        return State.getInstance().isSearchActive() ? searchManager.updateSnippet(oldSnippet, newSnippet) : dbms.updateSnippet(oldSnippet, newSnippet);
+        saveQueue.flush();
+        cache.remove(oldSnippet.getName());
+        cache.remove(newSnippet.getName());
+        boolean success = State.getInstance().isSearchActive() ? searchManager.updateSnippet(oldSnippet, newSnippet) : dbms.updateSnippet(oldSnippet, newSnippet);
+        cache.remove(oldSnippet.getName());
+        cache.remove(newSnippet.getName());
+        return success;
+    }
+
+    /**
+     * Salva le modifiche a uno snippet. Se lo snippet non viene rinominato le
+     * modifiche vengono accodate e scritte nel database in seguito (vedi
+     * {@link SaveQueue}), altrimenti vengono scritte subito come in
+     * {@link #updateSnippet(Snippet, Snippet)}.
+     * 
+     * @param oldSnippet Lo snippet prima delle modifiche.
+     * @param newSnippet Lo snippet modificato.
+     * @return <code>true</code> se le modifiche sono state accodate o
+     *         scritte, <code>false</code> altrimenti
+     */
+    public boolean saveSnippet(Snippet oldSnippet, Snippet newSnippet) {
+        if (!oldSnippet.getName().equals(newSnippet.getName())) {
+            return updateSnippet(oldSnippet, newSnippet);
+        }
+
+        if (State.getInstance().isSearchActive()) {
+            searchManager.snippetUpdated(oldSnippet, newSnippet);
+        }
+
+        saveQueue.add(oldSnippet, newSnippet);
+        cache.remove(newSnippet.getName());
+        return true;
+    }
+
+    /**
+     * Scrive nel database le modifiche accodate da
+     * {@link #saveSnippet(Snippet, Snippet)} e ritorna quando sono state
+     * scritte.
+     */
+    public void flush() {
+        saveQueue.flush();
+    }
+
+    /**
+     * Restituisce la coda delle modifiche non ancora scritte nel database.
+     * 
+     * @return la coda delle modifiche
+     */
+    public SaveQueue getSaveQueue() {
+        return saveQueue;
     }
 
     public boolean removeCategory(String text) {
-        return State.getInstance().isSearchActive() ? searchManager.removeCategory(text)
+        saveQueue.flush();
+        cache.removeCategory(text);
+        boolean success = State.getInstance().isSearchActive() ? searchManager.removeCategory(text)
                 : dbms.removeCategory(text);
+        cache.removeCategory(text);
+        return success;
     }
 
     public boolean renameCategory(String oldName, String newName) {
-        return State.getInstance().isSearchActive() ? searchManager.renameCategory(oldName, newName) : dbms.renameCategory(oldName, newName);
+        saveQueue.flush();
+        cache.removeCategory(oldName);
+        boolean success = State.getInstance().isSearchActive() ? searchManager.renameCategory(oldName, newName) : dbms.renameCategory(oldName, newName);
+        cache.removeCategory(oldName);
+        return success;
     }
 
     public boolean updateSyntax(String newSyntax, String category, String selectedSnippet) {
-        return State.getInstance().isSearchActive() ? searchManager.setSyntax(newSyntax, category, selectedSnippet) : dbms.setSyntaxToCategory(newSyntax, category, selectedSnippet);
+        saveQueue.flush();
+        cache.removeCategory(category);
+        boolean success = State.getInstance().isSearchActive() ? searchManager.setSyntax(newSyntax, category, selectedSnippet) : dbms.setSyntaxToCategory(newSyntax, category, selectedSnippet);
+        cache.removeCategory(category);
+        return success;
     }
 
     /**
@@ -70,12 +150,114 @@ public class Controller {
         return State.getInstance().isSearchActive() ? searchManager.getCategories() : dbms.getCategories();
     }
 
+    /**
+     * Restituisce i nomi degli snippet suddivisi per categoria: i risultati
+     * dell'ultima ricerca se la ricerca e' attiva, altrimenti tutto il
+     * contenuto del database.
+     * 
+     * @return i nomi degli snippet suddivisi per categoria
+     */
+    public LinkedHashMap<String, ArrayList<String>> getCatalog() {
+        return State.getInstance().isSearchActive() ? searchManager.getCatalog() : dbms.getCatalog();
+    }
+
     public String getCategoryOf(String snippet) {
         return dbms.getCategoryOf(snippet);
     }
 
+    /**
+     * Restituisce lo snippet indicato, leggendolo dal database solo se non e'
+     * gia' presente tra le modifiche in coda o nella cache.
+     * 
+     * @param name Il nome dello snippet.
+     * @return lo snippet indicato, oppure <code>null</code> se non esiste
+     */
     public Snippet getSnippet(String name) {
-        return dbms.getSnippet(name);
+        // letta prima di ogni altra cosa: vedi SnippetCache#put(Snippet, long)
+        long version = cache.getVersion();
+
+        Snippet snippet = saveQueue.get(name);
+        if (snippet != null) {
+            return snippet;
+        }
+
+        snippet = cache.get(name);
+
+        if (snippet == null) {
+            snippet = dbms.getSnippet(name);
+            if (snippet != null) {
+                cache.put(snippet, version);
+            }
+        }
+
+        return snippet;
+    }
+
+    /**
+     * Restituisce l'intestazione dello snippet indicato. Se lo snippet e' in
+     * cache viene restituito lo snippet completo, altrimenti ne vengono letti
+     * dal database solo i dati dell'intestazione.
+     * 
+     * @param name Il nome dello snippet.
+     * @return l'intestazione dello snippet, oppure <code>null</code> se non
+     *         esiste
+     */
+    public SnippetHeader getSnippetHeader(String name) {
+        Snippet snippet = saveQueue.get(name);
+        if (snippet == null) {
+            snippet = cache.get(name);
+        }
+        return snippet != null ? snippet : dbms.getSnippetHeader(name);
+    }
+
+    /**
+     * Restituisce lo snippet completo corrispondente all'intestazione
+     * indicata, leggendone codice e commento dal database solo se non e'
+     * gia' presente nella cache.
+     * 
+     * @param header L'intestazione dello snippet.
+     * @return lo snippet completo, oppure <code>null</code> se non esiste
+     */
+    public Snippet loadSnippet(SnippetHeader header) {
+        if (header instanceof Snippet) {
+            return (Snippet) header;
+        }
+
+        long version = cache.getVersion();
+
+        Snippet snippet = saveQueue.get(header.getName());
+        if (snippet != null) {
+            return snippet;
+        }
+
+        snippet = cache.get(header.getName());
+
+        if (snippet == null) {
+            snippet = dbms.loadSnippetBody(header);
+            if (snippet != null) {
+                cache.put(snippet, version);
+            }
+        }
+
+        return snippet;
+    }
+
+    public boolean moveSnippet(String name, String category) {
+        saveQueue.flush();
+        cache.remove(name);
+        boolean success = State.getInstance().isSearchActive() ? searchManager.moveSnippet(name, category) : dbms.moveSnippet(name, category);
+        cache.remove(name);
+        return success;
+    }
+
+    /**
+     * Restituisce la cache degli snippet (ad esempio per leggerne le
+     * statistiche).
+     * 
+     * @return la cache degli snippet
+     */
+    public SnippetCache getSnippetCache() {
+        return cache;
     }
 
     public ArrayList<String> getSnippetsName(String category) {
@@ -83,11 +265,22 @@ public class Controller {
     }
 
     public boolean insertNewSnippet(Snippet newSnippet) {
+        cache.remove(newSnippet.getName());
         return dbms.insertNewSnippet(newSnippet);
     }
 
     public boolean lockSnippet(String name, boolean locked) {
-        return dbms.lockSnippet(name, locked);
+        // la modifica in attesa sovrascriverebbe lo stato di blocco
+        saveQueue.flush();
+        boolean success = dbms.lockSnippet(name, locked);
+
+        if (success) {
+            cache.setLocked(name, locked);
+        } else {
+            cache.remove(name);
+        }
+
+        return success;
     }
 
     public boolean isSearchActive() {
@@ -98,6 +291,14 @@ public class Controller {
         searchManager.setData(data);
     }
 
+    public void setResults(SearchHits hits) {
+        searchManager.setHits(hits);
+    }
+
+    public boolean isRanked() {
+        return State.getInstance().isSearchActive() && searchManager.isRanked();
+    }
+
     public int countCategories() {
         return State.getInstance().isSearchActive() ? searchManager.countCategories() : dbms.countCategories();
     }
@@ -106,6 +307,17 @@ public class Controller {
         return State.getInstance().isSearchActive() ? searchManager.countSnippets() : dbms.countSnippets();
     }
 
+    /**
+     * Restituisce il numero di snippet trovati dall'ultima ricerca, compresi
+     * quelli esclusi dal limite dei risultati, oppure il numero di snippet
+     * del database se la ricerca non e' attiva.
+     * 
+     * @return il numero di snippet trovati
+     */
+    public int countMatches() {
+        return State.getInstance().isSearchActive() ? searchManager.countMatches() : dbms.countSnippets();
+    }
+
     public int size() {
         return countSnippets();
     }
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.net.InetAddress;
+
+/**
+ * Avvia il server di rete di Derby (<code>derbynet.jar</code>) o si collega
+ * a quello gia' avviato da un altro processo. In questo modo piu' istanze
+ * dell'applicazione (l'interfaccia grafica, la riga di comando, il server
+ * HTTP) possono usare lo stesso database contemporaneamente. Le classi di
+ * Derby vengono caricate a runtime, come il driver JDBC.
+ * <p>
+ * Il server non viene mai eseguito all'interno dell'applicazione: viene
+ * avviato in una JVM separata (vedi {@link #main(String[])}) che resta attiva
+ * anche dopo l'uscita del processo che l'ha avviata, in modo che la chiusura
+ * di un comando della riga di comando non interrompa le connessioni
+ * dell'interfaccia grafica o del server HTTP. Il server si ferma con il
+ * comando <code>shutdown</code> di <code>NetworkServerControl</code> o allo
+ * spegnimento del sistema; i suoi messaggi vengono scritti nel file
+ * <code>jcodecollector-derby-&lt;porta&gt;.log</code> della cartella dei file
+ * temporanei.
+ * 
+ * @author Alessandro Cocco
+ */
+public class DerbyServer {
+
+    /** La porta predefinita del server di rete di Derby. */
+    public static final int DEFAULT_PORT = 1527;
+
+    /** Il driver JDBC usato per collegarsi al server di rete. */
+    public static final String CLIENT_DRIVER = "org.apache.derby.jdbc.ClientDriver";
+
+    private static final String SERVER_CLASS = "org.apache.derby.drda.NetworkServerControl";
+
+    /**
+     * Il numero massimo di tentativi di contattare il server appena avviato:
+     * la JVM del server impiega qualche secondo ad avviarsi.
+     */
+    private static final int PING_ATTEMPTS = 60;
+
+    /** L'intervallo tra due tentativi, in millisecondi. */
+    private static final long PING_INTERVAL = 250;
+
+    /**
+     * L'intervallo, in millisecondi, con cui la JVM del server verifica che
+     * il server sia ancora attivo.
+     */
+    private static final long WATCH_INTERVAL = 5000;
+
+    private DerbyServer() {
+        // solo metodi statici
+    }
+
+    /**
+     * Verifica che un server di rete di Derby sia in ascolto sulla porta
+     * indicata dell'indirizzo locale e, se non lo e', lo avvia in una JVM
+     * separata. Il server avviato resta attivo anche dopo l'uscita di questo
+     * processo.
+     * 
+     * @param port La porta del server.
+     * @return <code>true</code> se il server e' raggiungibile,
+     *         <code>false</code> altrimenti
+     */
+    public static boolean ensureStarted(int port) {
+        Object control = createControl(port);
+        if (control == null) {
+            return false;
+        }
+
+        if (ping(control)) {
+            System.out.println("attaching to derby network server on port " + port);
+            return true;
+        }
+
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                DerbyServer.class.getName(), String.valueOf(port));
+
+        try {
+            System.out.println("starting derby network server on port " + port);
+            Process process = builder.start();
+
+            // il server scrive sul proprio file di log: i flussi del processo
+            // non servono
+            process.getOutputStream().close();
+            process.getInputStream().close();
+            process.getErrorStream().close();
+        } catch (IOException ex) {
+            System.err.println("cannot start derby network server: " + ex);
+            return false;
+        }
+
+        if (waitForServer(control)) {
+            return true;
+        }
+
+        System.err.println("derby network server does not answer on port " + port);
+        return false;
+    }
+
+    /**
+     * Esegue il server di rete di Derby sulla porta indicata finche' non
+     * viene fermato. Viene usato da {@link #ensureStarted(int)} come punto di
+     * ingresso della JVM del server.
+     * 
+     * @param args La porta del server.
+     */
+    public static void main(String[] args) {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        // il processo che ha avviato il server non legge i flussi standard
+        File log = new File(System.getProperty("java.io.tmpdir"), "jcodecollector-derby-" + port + ".log");
+        try {
+            PrintStream stream = new PrintStream(new FileOutputStream(log, true), true);
+            System.setOut(stream);
+            System.setErr(stream);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+
+        Object control = createControl(port);
+        if (control == null) {
+            System.exit(1);
+        }
+
+        // un altro processo ha gia' avviato il server
+        if (ping(control)) {
+            System.exit(0);
+        }
+
+        try {
+            control.getClass().getMethod("start", PrintWriter.class).invoke(control, new PrintWriter(System.out, true));
+        } catch (Exception ex) {
+            System.err.println("cannot start derby network server: " + ex);
+            System.exit(1);
+        }
+
+        if (!waitForServer(control)) {
+            System.err.println("derby network server does not answer on port " + port);
+            System.exit(1);
+        }
+
+        // il server viene eseguito in altri thread: la JVM termina quando
+        // il server viene fermato
+        while (ping(control)) {
+            try {
+                Thread.sleep(WATCH_INTERVAL);
+            } catch (InterruptedException ex) {
+                break;
+            }
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * Crea l'oggetto <code>NetworkServerControl</code> per la porta indicata
+     * dell'indirizzo locale.
+     * 
+     * @param port La porta del server.
+     * @return l'oggetto creato, oppure <code>null</code> se le classi del
+     *         server di rete non sono disponibili
+     */
+    private static Object createControl(int port) {
+        try {
+            Constructor<?> constructor = Class.forName(SERVER_CLASS).getConstructor(InetAddress.class, int.class);
+            return constructor.newInstance(InetAddress.getByName(null), port);
+        } catch (Exception ex) {
+            System.err.println("cannot load derby network server: " + ex);
+            return null;
+        }
+    }
+
+    /**
+     * Attende che il server appena avviato risponda.
+     * 
+     * @param control Il controllo del server.
+     * @return <code>true</code> se il server risponde, <code>false</code> se
+     *         non risponde entro il tempo massimo o se l'attesa viene
+     *         interrotta
+     */
+    private static boolean waitForServer(Object control) {
+        for (int i = 0; i < PING_ATTEMPTS; i++) {
+            if (ping(control)) {
+                return true;
+            }
+
+            try {
+                Thread.sleep(PING_INTERVAL);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean ping(Object control) {
+        try {
+            control.getClass().getMethod("ping").invoke(control);
+            return true;
+        } catch (InvocationTargetException ex) {
+            // il server non risponde
+            return false;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * L'esito dell'inserimento di un gruppo di snippet con
+ * {@link DBMS#insertSnippets(java.util.Collection)}: il numero di snippet
+ * inseriti e, per ogni snippet scartato, il motivo dell'errore.
+ *
+ * @author Alessandro Cocco
+ */
+public class InsertResult {
+
+    /** Il numero di snippet inseriti. */
+    private int inserted = 0;
+
+    /** Gli snippet scartati con il relativo errore, indicizzati per nome. */
+    private LinkedHashMap<String, String> failures = new LinkedHashMap<String, String>();
+
+    void addInserted(int count) {
+        inserted += count;
+    }
+
+    /**
+     * Registra uno snippet scartato.
+     *
+     * @param name Il nome dello snippet.
+     * @param message Il motivo per cui lo snippet e' stato scartato.
+     */
+    public void addFailure(String name, String message) {
+        failures.put(name, message);
+    }
+
+    /**
+     * Aggiunge a questo risultato quello indicato.
+     *
+     * @param result Il risultato da aggiungere.
+     */
+    public void add(InsertResult result) {
+        inserted += result.inserted;
+        failures.putAll(result.failures);
+    }
+
+    /**
+     * Restituisce il numero di snippet inseriti.
+     *
+     * @return il numero di snippet inseriti
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Restituisce il numero di snippet scartati.
+     *
+     * @return il numero di snippet scartati
+     */
+    public int getFailed() {
+        return failures.size();
+    }
+
+    /**
+     * Restituisce gli snippet scartati, nell'ordine in cui sono stati
+     * inseriti, con il messaggio d'errore del database (ad esempio per un
+     * nome gia' esistente).
+     *
+     * @return una mappa (nome snippet, errore) non modificabile
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    @Override
+    public String toString() {
+        return "inserted=" + inserted + ", failed=" + failures.size();
+    }
+
+}
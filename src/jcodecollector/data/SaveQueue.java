@@ -0,0 +1,240 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import jcodecollector.common.bean.Snippet;
+
+/**
+ * Coda delle modifiche agli snippet non ancora scritte nel database. Le
+ * modifiche vengono accodate e scritte in un'unica transazione con
+ * {@link #flush()}, eseguito automaticamente {@link #FLUSH_DELAY}
+ * millisecondi dopo la prima modifica accodata e alla chiusura della JVM.
+ * Piu' modifiche allo stesso snippet accodate prima della scrittura vengono
+ * unite in una sola. Le modifiche che non e' possibile scrivere restano in
+ * coda e vengono ritentate alla scrittura successiva: chi deve garantire che
+ * siano state scritte, ad esempio prima dell'uscita, controlla
+ * {@link #isEmpty()} dopo {@link #flush()}.
+ * <p>
+ * Vengono accodate solo le modifiche che non cambiano il nome dello snippet:
+ * il nome e' la chiave con cui vengono riconosciute le modifiche allo stesso
+ * snippet e l'unica modifica che puo' violare un vincolo del database. Chi
+ * modifica il database in altro modo deve prima chiamare {@link #flush()}.
+ * 
+ * @author Alessandro Cocco
+ */
+public class SaveQueue {
+
+    /** Il ritardo della scrittura delle modifiche, in millisecondi. */
+    public static final long FLUSH_DELAY = 2000;
+
+    /** Riceve i nomi degli snippet le cui modifiche non sono state scritte. */
+    public interface FailureListener {
+
+        /**
+         * Segnala gli snippet che non e' stato possibile aggiornare. Il
+         * metodo viene chiamato dal thread che ha eseguito la scrittura.
+         * 
+         * @param names I nomi degli snippet.
+         */
+        public void saveFailed(ArrayList<String> names);
+    }
+
+    /**
+     * Le modifiche in attesa, indicizzate per nome dello snippet: per ognuna
+     * lo snippet come e' scritto nel database e lo snippet modificato.
+     */
+    private LinkedHashMap<String, Snippet[]> pending = new LinkedHashMap<String, Snippet[]>();
+
+    /** Le modifiche in corso di scrittura. */
+    private LinkedHashMap<String, Snippet[]> flushing = new LinkedHashMap<String, Snippet[]>();
+
+    /** Serializza le scritture: una nuova scrittura attende la precedente. */
+    private final Object flushLock = new Object();
+
+    /** Il timer che esegue le scritture ritardate. */
+    private final Timer timer = new Timer("jcc-save-queue", true);
+
+    /** <code>true</code> se e' gia' stata programmata una scrittura. */
+    private boolean scheduled = false;
+
+    /** Riceve gli errori di scrittura (puo' essere <code>null</code>). */
+    private volatile FailureListener failureListener = null;
+
+    /**
+     * Crea una coda vuota. Le modifiche ancora in coda alla chiusura della
+     * JVM vengono scritte prima dell'uscita.
+     */
+    public SaveQueue() {
+        Runtime.getRuntime().addShutdownHook(new Thread("jcc-save-queue-flush") {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+    }
+
+    /**
+     * Accoda la modifica di uno snippet. Se lo snippet ha gia' una modifica
+     * in attesa le due modifiche vengono unite.
+     * 
+     * @param oldSnippet Lo snippet prima della modifica.
+     * @param newSnippet Lo snippet modificato, con lo stesso nome.
+     */
+    public synchronized void add(Snippet oldSnippet, Snippet newSnippet) {
+        if (!oldSnippet.getName().equals(newSnippet.getName())) {
+            throw new IllegalArgumentException("a queued update cannot rename a snippet");
+        }
+
+        String name = newSnippet.getName();
+        Snippet[] update = pending.get(name);
+
+        if (update != null) {
+            // lo snippet nel database non e' cambiato: basta sostituire lo
+            // snippet modificato
+            update[1] = newSnippet;
+        } else {
+            // se lo snippet e' in corso di scrittura quando la scrittura
+            // terminera' il database conterra' la versione in scrittura
+            Snippet[] current = flushing.get(name);
+            pending.put(name, new Snippet[] { current != null ? current[1] : oldSnippet, newSnippet });
+        }
+
+        if (!scheduled) {
+            scheduled = true;
+            timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, FLUSH_DELAY);
+        }
+    }
+
+    /**
+     * Restituisce l'ultima versione accodata dello snippet indicato.
+     * 
+     * @param name Il nome dello snippet.
+     * @return lo snippet modificato, oppure <code>null</code> se lo snippet
+     *         non ha modifiche non ancora scritte nel database
+     */
+    public synchronized Snippet get(String name) {
+        Snippet[] update = pending.get(name);
+        if (update == null) {
+            update = flushing.get(name);
+        }
+
+        return update == null ? null : update[1];
+    }
+
+    /**
+     * Indica se ci sono modifiche non ancora scritte nel database.
+     * 
+     * @return <code>true</code> se ci sono modifiche in attesa o in corso di
+     *         scrittura, <code>false</code> altrimenti
+     */
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty() && flushing.isEmpty();
+    }
+
+    /**
+     * Restituisce i nomi degli snippet con modifiche non ancora scritte nel
+     * database.
+     * 
+     * @return i nomi degli snippet, nell'ordine in cui sono stati accodati
+     */
+    public synchronized ArrayList<String> getNames() {
+        ArrayList<String> names = new ArrayList<String>(flushing.keySet());
+        for (String name : pending.keySet()) {
+            if (!flushing.containsKey(name)) {
+                names.add(name);
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * Imposta chi riceve gli errori di scrittura.
+     * 
+     * @param failureListener Chi riceve gli errori di scrittura (puo' essere
+     *        <code>null</code>).
+     */
+    public void setFailureListener(FailureListener failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Scrive nel database tutte le modifiche in attesa e ritorna quando la
+     * scrittura e' terminata, anche se iniziata da un altro thread. Le
+     * modifiche che non e' stato possibile scrivere vengono rimesse in coda e
+     * segnalate a chi riceve gli errori di scrittura.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            ArrayList<Snippet[]> updates;
+
+            synchronized (this) {
+                scheduled = false;
+                if (pending.isEmpty()) {
+                    return;
+                }
+
+                // le modifiche restano leggibili fino al termine della
+                // scrittura
+                flushing = pending;
+                pending = new LinkedHashMap<String, Snippet[]>();
+                updates = new ArrayList<Snippet[]>(flushing.values());
+            }
+
+            ArrayList<String> failed = DBMS.getInstance().updateSnippets(updates);
+
+            synchronized (this) {
+                // le modifiche non scritte tornano in coda prima di quelle
+                // accodate nel frattempo: il database contiene ancora lo
+                // snippet precedente alla modifica non scritta
+                LinkedHashMap<String, Snippet[]> queue = new LinkedHashMap<String, Snippet[]>();
+                for (String name : failed) {
+                    Snippet[] update = flushing.get(name);
+                    Snippet[] newer = pending.get(name);
+                    if (update == null) {
+                        continue;
+                    }
+
+                    if (newer != null) {
+                        newer[0] = update[0];
+                    } else {
+                        queue.put(name, update);
+                    }
+                }
+
+                queue.putAll(pending);
+                pending = queue;
+                flushing = new LinkedHashMap<String, Snippet[]>();
+            }
+
+            FailureListener listener = failureListener;
+            if (!failed.isEmpty() && listener != null) {
+                listener.saveFailed(failed);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import jcodecollector.util.ApplicationConstants;
+
+/**
+ * Aggiorna lo schema del database all'ultima versione. Ogni modifica allo
+ * schema e' una {@link Migration} con un numero di versione crescente; la
+ * versione raggiunta viene salvata nella tabella <code>metadata</code> con la
+ * chiave {@link #SCHEMA_VERSION_KEY} e ogni migrazione viene eseguita in una
+ * transazione separata, quindi un errore lascia il database all'ultima
+ * versione completata.
+ * <p>
+ * Un database senza versione e' stato creato prima dell'introduzione delle
+ * migrazioni (versione 0): le migrazioni devono quindi controllare lo stato
+ * effettivo dello schema quando questo non e' univoco.
+ *
+ * @author Alessandro Cocco
+ */
+public class SchemaMigrator {
+
+    /** La chiave della tabella <code>metadata</code> con la versione. */
+    public static final String SCHEMA_VERSION_KEY = "schema_version";
+
+    /** Una modifica allo schema del database. */
+    private static abstract class Migration {
+        private String description;
+
+        public Migration(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        /**
+         * Applica la modifica. La transazione viene gestita da
+         * {@link SchemaMigrator}.
+         */
+        public abstract void migrate(Connection connection, Statement statement) throws SQLException;
+    }
+
+    /**
+     * Le migrazioni, in ordine: la migrazione in posizione <code>i</code>
+     * porta il database alla versione <code>i + 1</code>. Le migrazioni gia'
+     * rilasciate non vanno mai modificate, solo aggiunte in fondo.
+     */
+    private static final Migration[] MIGRATIONS = new Migration[] {
+
+    new Migration("update database from version 2.0") {
+        public void migrate(Connection connection, Statement statement) throws SQLException {
+            // solo i database della versione 2.0 hanno la colonna id_style
+            if (!columnExists(connection, "SNIPPETS", "ID_STYLE")) {
+                return;
+            }
+
+            statement.execute("alter table snippets add column syntax_name varchar(50)");
+            statement.execute("alter table snippets drop column id_style");
+            statement.execute("drop table keywords");
+            statement.execute("drop table styles");
+        }
+    },
+
+    new Migration("index categories and tags") {
+        public void migrate(Connection connection, Statement statement) throws SQLException {
+            statement.execute("create index snippets_category_index on snippets(snippet_category)");
+            statement.execute("create index tags_name_index on tags(tag_name)");
+        }
+    },
+
+    new Migration("index upper-cased snippet names and tags") {
+        public void migrate(Connection connection, Statement statement) throws SQLException {
+            // colonne calcolate da Derby, usate dalla ricerca case-insensitive
+            statement.execute("alter table snippets add column snippet_name_upper varchar("
+                    + ApplicationConstants.SNIPPET_NAME_LENGTH + ") generated always as (upper(snippet_name))");
+            statement.execute("alter table tags add column tag_name_upper varchar("
+                    + ApplicationConstants.TAG_LENGTH + ") generated always as (upper(tag_name))");
+            statement.execute("create index snippets_name_upper_index on snippets(snippet_name_upper)");
+            statement.execute("create index tags_name_upper_index on tags(tag_name_upper)");
+        }
+    },
+
+    new Migration("store snippet code in a clob column") {
+        public void migrate(Connection connection, Statement statement) throws SQLException {
+            // i database creati da questa versione hanno gia' la colonna clob
+            if ("CLOB".equals(columnType(connection, "SNIPPETS", "SNIPPET_CODE"))) {
+                return;
+            }
+
+            // Derby non converte una colonna varchar in clob: copio il codice
+            // in una nuova colonna e la rinomino
+            String type = "clob(" + ApplicationConstants.CODE_LENGTH + ")";
+            statement.execute("alter table snippets add column snippet_code_clob " + type);
+            statement.execute("update snippets set snippet_code_clob = cast(snippet_code as " + type + ")");
+            statement.execute("alter table snippets drop column snippet_code");
+            statement.execute("rename column snippets.snippet_code_clob to snippet_code");
+            statement.execute("alter table snippets alter column snippet_code not null");
+        }
+    } };
+
+    /** La connessione al database da aggiornare. */
+    private Connection connection;
+
+    /**
+     * Crea un nuovo migratore per il database indicato. La tabella
+     * <code>metadata</code> deve gia' esistere.
+     *
+     * @param connection La connessione al database da aggiornare.
+     */
+    public SchemaMigrator(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Restituisce l'ultima versione dello schema.
+     *
+     * @return l'ultima versione dello schema
+     */
+    public static int getLatestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    /**
+     * Restituisce la versione attuale dello schema.
+     *
+     * @return la versione attuale dello schema (0 se il database non e' mai
+     *         stato aggiornato), oppure -1 in caso di errore
+     */
+    public int getVersion() {
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            statement = connection.prepareStatement("select meta_value from metadata where meta_key = ?");
+            statement.setString(1, SCHEMA_VERSION_KEY);
+
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? Integer.parseInt(resultSet.getString(1)) : 0;
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return -1;
+        } catch (NumberFormatException ex) {
+            ex.printStackTrace();
+            return -1;
+        } finally {
+            close(resultSet);
+            close(statement);
+        }
+    }
+
+    /**
+     * Indica se il database e' stato creato dalla versione 2.0 di
+     * jCodeCollector. Aggiornarlo comporta la perdita delle sintassi degli
+     * snippet.
+     *
+     * @return <code>true</code> se il database deve essere convertito dal
+     *         formato della versione 2.0, <code>false</code> altrimenti
+     */
+    public boolean isLegacyDatabase() {
+        try {
+            return getVersion() == 0 && columnExists(connection, "SNIPPETS", "ID_STYLE");
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Esegue tutte le migrazioni non ancora applicate al database.
+     *
+     * @return <code>true</code> se il database e' aggiornato all'ultima
+     *         versione, <code>false</code> in caso di errore
+     */
+    public boolean migrate() {
+        int version = getVersion();
+        if (version < 0) {
+            return false;
+        }
+
+        if (version > MIGRATIONS.length) {
+            System.err.println("database schema version " + version + " is newer than " + MIGRATIONS.length);
+            return false;
+        }
+
+        for (int i = version; i < MIGRATIONS.length; i++) {
+            if (!migrate(MIGRATIONS[i], i + 1)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private boolean migrate(Migration migration, int version) {
+        Statement statement = null;
+        PreparedStatement update = null;
+        System.out.println("migrating database to version " + version + ": " + migration.getDescription());
+
+        try {
+            // eseguo la migrazione e registro la nuova versione in una
+            // transazione
+            connection.setAutoCommit(false);
+
+            statement = connection.createStatement();
+            migration.migrate(connection, statement);
+
+            update = connection.prepareStatement("update metadata set meta_value = ? where meta_key = ?");
+            update.setString(1, String.valueOf(version));
+            update.setString(2, SCHEMA_VERSION_KEY);
+
+            if (update.executeUpdate() == 0) {
+                close(update);
+                update = connection.prepareStatement("insert into metadata (meta_value, meta_key) values (?, ?)");
+                update.setString(1, String.valueOf(version));
+                update.setString(2, SCHEMA_VERSION_KEY);
+                update.executeUpdate();
+            }
+
+            connection.commit();
+            return true;
+        } catch (SQLException ex) {
+            System.err.println("error migrating database to version " + version);
+            ex.printStackTrace();
+
+            try {
+                connection.rollback();
+            } catch (SQLException ex1) {
+                ex1.printStackTrace();
+            }
+
+            return false;
+        } finally {
+            close(update);
+            close(statement);
+
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException ex) {
+                System.err.println("cannot re-enable auto commit");
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private static boolean columnExists(Connection connection, String table, String column) throws SQLException {
+        return columnType(connection, table, column) != null;
+    }
+
+    /**
+     * Restituisce il nome del tipo della colonna indicata, oppure
+     * <code>null</code> se la colonna non esiste.
+     */
+    private static String columnType(Connection connection, String table, String column) throws SQLException {
+        ResultSet resultSet = connection.getMetaData().getColumns(null, null, table, column);
+
+        try {
+            return resultSet.next() ? resultSet.getString("TYPE_NAME") : null;
+        } finally {
+            close(resultSet);
+        }
+    }
+
+    private static void close(Statement statement) {
+        if (statement == null) {
+            return;
+        }
+
+        try {
+            statement.close();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static void close(ResultSet resultSet) {
+        if (resultSet == null) {
+            return;
+        }
+
+        try {
+            resultSet.close();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+}
@@ -58,6 +58,14 @@ public class SearchFilter {
         return ApplicationSettings.getInstance().isSearchCaseSensitive();
     }
 
+    public void setSearchAsYouTypeEnabled(boolean searchAsYouTypeEnabled) {
+        ApplicationSettings.getInstance().setSearchAsYouTypeEnabled(searchAsYouTypeEnabled);
+    }
+
+    public boolean isSearchAsYouTypeEnabled() {
+        return ApplicationSettings.getInstance().isSearchAsYouTypeEnabled();
+    }
+
     public int countSearchTypeEnabled() {
         int sum = 0;
         if (ApplicationSettings.getInstance().isSearchInNameEnabled()) {
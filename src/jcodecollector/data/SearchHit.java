@@ -0,0 +1,64 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+/**
+ * Un risultato della ricerca: lo snippet trovato e la sua rilevanza. I
+ * risultati sono ordinati dal piu' rilevante; a parita' di punteggio vengono
+ * ordinati per nome.
+ *
+ * @author Alessandro Cocco
+ */
+public class SearchHit implements Comparable<SearchHit> {
+
+    /** Il nome dello snippet. */
+    private String name;
+
+    /** La categoria dello snippet. */
+    private String category;
+
+    /** La rilevanza dello snippet rispetto alle parole chiave cercate. */
+    private double score;
+
+    public SearchHit(String name, String category, double score) {
+        this.name = name;
+        this.category = category;
+        this.score = score;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public int compareTo(SearchHit hit) {
+        int result = Double.compare(hit.score, score);
+        return result != 0 ? result : name.compareTo(hit.name);
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + score + ")";
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * I risultati di una ricerca ordinati per rilevanza, eventualmente limitati
+ * ai migliori: {@link #getTotal()} indica quanti snippet sono stati trovati
+ * in tutto.
+ *
+ * @author Alessandro Cocco
+ */
+public class SearchHits extends ArrayList<SearchHit> {
+
+    /** Il numero di snippet trovati, compresi quelli esclusi dal limite. */
+    private int total;
+
+    /**
+     * Crea un elenco di risultati.
+     *
+     * @param hits I risultati, dal piu' rilevante.
+     * @param total Il numero di snippet trovati, compresi quelli esclusi dal
+     *        limite.
+     */
+    public SearchHits(Collection<SearchHit> hits, int total) {
+        super(hits);
+        this.total = Math.max(total, hits.size());
+    }
+
+    /**
+     * Restituisce il numero di snippet trovati, compresi quelli esclusi dal
+     * limite della ricerca.
+     *
+     * @return il numero di snippet trovati
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /** Serial Version UID. */
+    private static final long serialVersionUID = 3512790441316584412L;
+}
@@ -0,0 +1,948 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import jcodecollector.common.bean.Snippet;
+
+/**
+ * Indice invertito in memoria usato per la ricerca degli snippet. Per ogni
+ * campo (nome, tag, codice e commento) associa ad ogni termine l'elenco
+ * ordinato degli identificativi degli snippet che lo contengono.
+ * <p>
+ * Nome, codice e commento vengono suddivisi in termini composti da lettere,
+ * cifre e <code>_</code>: una parola chiave formata solo da questi caratteri
+ * e' contenuta nel testo se e solo se e' contenuta in uno dei suoi termini,
+ * quindi la ricerca per sottostringa sul vocabolario restituisce gli stessi
+ * risultati della clausola <code>LIKE '%parola%'</code>. I tag vengono
+ * indicizzati per intero e confrontati per uguaglianza. Le parole chiave che
+ * contengono altri caratteri non possono essere risolte dall'indice (vedi
+ * {@link #canSearch(String[])}), ma l'indice restringe la ricerca agli
+ * snippet che contengono tutti i loro termini (vedi
+ * {@link #getCandidates(String[], boolean, int...)}).
+ * <p>
+ * Per non confrontare le parole chiave con tutto il vocabolario, i termini di
+ * nome, codice e commento sono indicizzati anche per trigrammi (le sequenze
+ * di tre caratteri, in maiuscolo, che contengono): i termini che contengono
+ * una parola chiave sono tra quelli del suo trigramma meno frequente. I tag
+ * sono indicizzati per intero, in maiuscolo.
+ * <p>
+ * Per ogni termine viene memorizzato anche il numero di occorrenze in ogni
+ * snippet, usato da {@link #rank(String[], boolean, int, int...)} per
+ * ordinare i risultati per rilevanza (BM25, con un peso diverso per ogni
+ * campo).
+ * <p>
+ * L'indice puo' essere salvato su file ({@link #save(File, String, long)})
+ * insieme alla generazione del database a cui corrisponde, in modo da non
+ * doverlo ricostruire ad ogni avvio.
+ *
+ * @author Alessandro Cocco
+ */
+public class SearchIndex {
+
+    /** Campo nome. */
+    public static final int NAME = 0;
+
+    /** Campo tag. */
+    public static final int TAGS = 1;
+
+    /** Campo codice. */
+    public static final int CODE = 2;
+
+    /** Campo commento. */
+    public static final int COMMENT = 3;
+
+    /** Il numero di campi indicizzati. */
+    private static final int FIELDS = 4;
+
+    /** L'intestazione dei file dell'indice ("JCCI"). */
+    private static final int MAGIC = 0x4A434349;
+
+    /** La versione del formato dei file dell'indice. */
+    private static final int FORMAT_VERSION = 3;
+
+    /**
+     * Il peso di ogni campo nel calcolo della rilevanza: una corrispondenza nel
+     * nome conta piu' di una nei tag, che conta piu' di una nel commento o nel
+     * codice.
+     */
+    private static final double[] FIELD_WEIGHTS = { 4.0, 3.0, 1.0, 1.5 };
+
+    /** Parametro BM25: saturazione della frequenza dei termini. */
+    private static final double K1 = 1.2;
+
+    /** Parametro BM25: normalizzazione rispetto alla lunghezza del campo. */
+    private static final double B = 0.75;
+
+    /** La lunghezza delle sequenze di caratteri con cui vengono indicizzati i termini. */
+    private static final int GRAM_LENGTH = 3;
+
+    /** Il vocabolario di ogni campo: termine -> elenco degli snippet. */
+    private HashMap<String, Term>[] vocabularies;
+
+    /**
+     * I trigrammi di ogni campo: trigramma in maiuscolo -> termini che lo
+     * contengono. I termini piu' corti di un trigramma e i tag sono
+     * indicizzati per intero.
+     */
+    private HashMap<String, ArrayList<Term>>[] grams;
+
+    /** Gli snippet indicizzati, per identificativo. */
+    private HashMap<Integer, Document> documents;
+
+    /** Gli identificativi degli snippet, per nome. */
+    private HashMap<String, Integer> ids;
+
+    /** Il numero totale di termini indicizzati in ogni campo. */
+    private long[] lengths = new long[FIELDS];
+
+    /** La generazione del database a cui corrisponde l'indice salvato. */
+    private long generation = 0;
+
+    /** Crea un indice vuoto. */
+    @SuppressWarnings("unchecked")
+    public SearchIndex() {
+        vocabularies = new HashMap[FIELDS];
+        grams = new HashMap[FIELDS];
+        for (int i = 0; i < FIELDS; i++) {
+            vocabularies[i] = new HashMap<String, Term>();
+            grams[i] = new HashMap<String, ArrayList<Term>>();
+        }
+
+        documents = new HashMap<Integer, Document>();
+        ids = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Verifica se le parole chiave indicate possono essere cercate
+     * nell'indice, cioe' se sono tutte non vuote e formate solo da lettere,
+     * cifre e <code>_</code>.
+     *
+     * @param keywords Le parole chiave da cercare.
+     * @return <code>true</code> se la ricerca puo' essere risolta
+     *         dall'indice, <code>false</code> altrimenti
+     */
+    public static boolean canSearch(String[] keywords) {
+        for (String keyword : keywords) {
+            if (keyword.length() == 0) {
+                return false;
+            }
+
+            for (int i = 0; i < keyword.length(); i++) {
+                if (!isWordCharacter(keyword.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Aggiunge uno snippet all'indice. Se esiste gia' uno snippet con lo
+     * stesso nome viene sostituito.
+     *
+     * @param id L'identificativo dello snippet.
+     * @param snippet Lo snippet da indicizzare.
+     */
+    public synchronized void add(int id, Snippet snippet) {
+        remove(snippet.getName());
+
+        Document document = new Document(snippet.getName(), snippet.getCategory());
+        document.setTerms(NAME, tokenize(snippet.getName()));
+        document.setTerms(TAGS, distinct(snippet.getTags()));
+        document.setTerms(CODE, tokenize(snippet.getCode()));
+        document.setTerms(COMMENT, tokenize(snippet.getComment()));
+
+        add(id, document);
+    }
+
+    /**
+     * Aggiunge all'indice uno snippet gia' suddiviso in termini.
+     *
+     * @param id L'identificativo dello snippet.
+     * @param document Lo snippet da indicizzare.
+     */
+    private void add(int id, Document document) {
+        for (int field = 0; field < FIELDS; field++) {
+            document.lengths[field] = 0;
+
+            for (int i = 0; i < document.terms[field].length; i++) {
+                String text = document.terms[field][i];
+
+                Term term = vocabularies[field].get(text);
+                if (term == null) {
+                    term = new Term(text);
+                    vocabularies[field].put(text, term);
+                    addGrams(field, term);
+                }
+                term.postings.add(id, document.frequencies[field][i]);
+                document.lengths[field] += document.frequencies[field][i];
+            }
+
+            lengths[field] += document.lengths[field];
+        }
+
+        documents.put(id, document);
+        ids.put(document.name, id);
+    }
+
+    /**
+     * Aggiorna uno snippet gia' indicizzato, mantenendone l'identificativo.
+     *
+     * @param oldName Il nome attuale dello snippet.
+     * @param snippet Lo snippet aggiornato.
+     * @return <code>true</code> se lo snippet era presente nell'indice,
+     *         <code>false</code> altrimenti
+     */
+    public synchronized boolean update(String oldName, Snippet snippet) {
+        Integer id = ids.get(oldName);
+        if (id == null) {
+            return false;
+        }
+
+        remove(oldName);
+        add(id, snippet);
+
+        return true;
+    }
+
+    /**
+     * Rimuove uno snippet dall'indice.
+     *
+     * @param name Il nome dello snippet da rimuovere.
+     */
+    public synchronized void remove(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            remove(id.intValue());
+        }
+    }
+
+    /**
+     * Rimuove uno snippet dall'indice.
+     *
+     * @param id L'identificativo dello snippet da rimuovere.
+     */
+    public synchronized void remove(int id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+
+        ids.remove(document.name);
+        for (int field = 0; field < FIELDS; field++) {
+            lengths[field] -= document.lengths[field];
+
+            for (String text : document.terms[field]) {
+                Term term = vocabularies[field].get(text);
+                term.postings.remove(id);
+
+                // un termine senza snippet non serve piu'
+                if (term.postings.size() == 0) {
+                    vocabularies[field].remove(text);
+                    removeGrams(field, term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rimuove dall'indice tutti gli snippet della categoria indicata.
+     *
+     * @param category La categoria da rimuovere.
+     */
+    public synchronized void removeCategory(String category) {
+        ArrayList<String> names = new ArrayList<String>();
+        for (Document document : documents.values()) {
+            if (document.category.equals(category)) {
+                names.add(document.name);
+            }
+        }
+
+        for (String name : names) {
+            remove(name);
+        }
+    }
+
+    /**
+     * Rinomina una categoria.
+     *
+     * @param oldName Il nome attuale della categoria.
+     * @param newName Il nuovo nome della categoria.
+     */
+    public synchronized void renameCategory(String oldName, String newName) {
+        for (Document document : documents.values()) {
+            if (document.category.equals(oldName)) {
+                document.category = newName;
+            }
+        }
+    }
+
+    /**
+     * Sposta uno snippet in un'altra categoria.
+     *
+     * @param name Il nome dello snippet.
+     * @param category La nuova categoria dello snippet.
+     */
+    public synchronized void setCategory(String name, String category) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            documents.get(id).category = category;
+        }
+    }
+
+    /**
+     * Cerca le parole chiave indicate nei campi richiesti. Uno snippet fa
+     * parte del risultato se almeno una parola chiave compare in almeno uno
+     * dei campi, come nella ricerca effettuata dal database.
+     *
+     * @param keywords Le parole chiave (vedi {@link #canSearch(String[])}).
+     * @param caseSensitive <code>true</code> per distinguere maiuscole e
+     *        minuscole.
+     * @param fields I campi in cui cercare ({@link #NAME}, {@link #TAGS},
+     *        {@link #CODE}, {@link #COMMENT}).
+     * @return una mappa (categoria, elenco snippet) coi risultati della
+     *         ricerca
+     */
+    public synchronized TreeMap<String, TreeSet<String>> search(String[] keywords, boolean caseSensitive, int... fields) {
+        HashSet<Integer> found = new HashSet<Integer>();
+        for (int field : fields) {
+            for (String keyword : keywords) {
+                for (Term term : findTerms(field, keyword, caseSensitive)) {
+                    term.postings.addTo(found);
+                }
+            }
+        }
+
+        // costruisco una mappa (categoria, elenco snippet) coi risultati
+        TreeMap<String, TreeSet<String>> data = new TreeMap<String, TreeSet<String>>();
+        for (Integer id : found) {
+            Document document = documents.get(id);
+
+            TreeSet<String> set = data.get(document.category);
+            if (set == null) {
+                set = new TreeSet<String>();
+                data.put(document.category, set);
+            }
+            set.add(document.name);
+        }
+
+        return data;
+    }
+
+    /**
+     * Restituisce gli snippet che possono contenere le parole chiave
+     * indicate, comprese quelle che non possono essere cercate nell'indice.
+     * Un campo contiene una parola chiave solo se contiene tutte le sequenze
+     * di lettere, cifre e <code>_</code> della parola chiave, quindi il
+     * risultato comprende tutti gli snippet che la clausola
+     * <code>LIKE '%parola%'</code> troverebbe, ma va verificato dal database.
+     *
+     * @param keywords Le parole chiave.
+     * @param caseSensitive <code>true</code> per distinguere maiuscole e
+     *        minuscole.
+     * @param fields I campi in cui cercare.
+     * @return gli identificativi degli snippet, oppure <code>null</code> se
+     *         una parola chiave non contiene lettere, cifre o <code>_</code>
+     *         e quindi non restringe la ricerca
+     */
+    public synchronized HashSet<Integer> getCandidates(String[] keywords, boolean caseSensitive, int... fields) {
+        HashSet<Integer> candidates = new HashSet<Integer>();
+
+        for (String keyword : keywords) {
+            Set<String> parts = tokenize(keyword).keySet();
+
+            for (int field : fields) {
+                // i tag vengono confrontati per intero
+                if (field == TAGS) {
+                    for (Term term : findTerms(field, keyword, caseSensitive)) {
+                        term.postings.addTo(candidates);
+                    }
+                    continue;
+                }
+
+                if (parts.isEmpty()) {
+                    return null;
+                }
+
+                HashSet<Integer> found = null;
+                for (String part : parts) {
+                    HashSet<Integer> ids = new HashSet<Integer>();
+                    for (Term term : findTerms(field, part, caseSensitive)) {
+                        term.postings.addTo(ids);
+                    }
+
+                    if (found == null) {
+                        found = ids;
+                    } else {
+                        found.retainAll(ids);
+                    }
+
+                    if (found.isEmpty()) {
+                        break;
+                    }
+                }
+
+                candidates.addAll(found);
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Cerca le parole chiave indicate nei campi richiesti e restituisce i
+     * risultati ordinati per rilevanza. Gli snippet trovati sono gli stessi di
+     * {@link #search(String[], boolean, int...)}; il punteggio di ognuno e' la
+     * somma, per ogni termine corrispondente, del valore BM25 del termine nel
+     * campo moltiplicato per il peso del campo.
+     * <p>
+     * Se viene indicato un limite vengono conservati solo i risultati
+     * migliori in una coda di priorita' di quella dimensione, senza ordinare
+     * ne' raggruppare per categoria tutti gli snippet trovati.
+     *
+     * @param keywords Le parole chiave (vedi {@link #canSearch(String[])}).
+     * @param caseSensitive <code>true</code> per distinguere maiuscole e
+     *        minuscole.
+     * @param limit Il numero massimo di risultati da restituire (0 per
+     *        restituirli tutti).
+     * @param fields I campi in cui cercare.
+     * @return i risultati della ricerca, dal piu' rilevante
+     */
+    public synchronized SearchHits rank(String[] keywords, boolean caseSensitive, int limit, int... fields) {
+        final int n = documents.size();
+        HashMap<Integer, double[]> scores = new HashMap<Integer, double[]>();
+
+        for (int field : fields) {
+            double averageLength = n == 0 ? 0 : (double) lengths[field] / n;
+
+            // un termine che corrisponde a piu' parole chiave conta una volta
+            // per ognuna
+            HashMap<Term, Integer> terms = new HashMap<Term, Integer>();
+            for (String keyword : keywords) {
+                for (Term term : findTerms(field, keyword, caseSensitive)) {
+                    Integer count = terms.get(term);
+                    terms.put(term, count == null ? 1 : count + 1);
+                }
+            }
+
+            for (Map.Entry<Term, Integer> entry : terms.entrySet()) {
+                Term term = entry.getKey();
+                int matches = entry.getValue();
+
+                PostingList postings = term.postings;
+                double df = postings.size();
+                double idf = Math.log(1 + (n - df + 0.5) / (df + 0.5));
+
+                for (int i = 0; i < postings.size(); i++) {
+                    int id = postings.id(i);
+                    double tf = postings.frequency(i);
+                    double norm = averageLength == 0 ? 1 : 1 - B + B * documents.get(id).lengths[field] / averageLength;
+                    double value = matches * FIELD_WEIGHTS[field] * idf * tf * (K1 + 1) / (tf + K1 * norm);
+
+                    double[] score = scores.get(id);
+                    if (score == null) {
+                        scores.put(id, new double[] { value });
+                    } else {
+                        score[0] += value;
+                    }
+                }
+            }
+        }
+
+        // con un limite conservo solo i risultati migliori: la testa della
+        // coda e' il peggiore tra quelli conservati
+        int capacity = limit > 0 ? limit + 1 : Math.max(scores.size(), 1);
+        PriorityQueue<SearchHit> queue = new PriorityQueue<SearchHit>(capacity, Collections.reverseOrder());
+
+        for (Integer id : scores.keySet()) {
+            Document document = documents.get(id);
+            queue.add(new SearchHit(document.name, document.category, scores.get(id)[0]));
+
+            if (limit > 0 && queue.size() > limit) {
+                queue.poll();
+            }
+        }
+
+        ArrayList<SearchHit> hits = new ArrayList<SearchHit>(queue);
+        Collections.sort(hits);
+
+        return new SearchHits(hits, scores.size());
+    }
+
+    /**
+     * Restituisce i termini del campo indicato che corrispondono alla parola
+     * chiave: i tag uguali alla parola chiave, i termini degli altri campi che
+     * la contengono. Vengono confrontati solo i termini che contengono il
+     * trigramma meno frequente della parola chiave o, se la parola chiave e'
+     * piu' corta di un trigramma, quelli dei trigrammi che la contengono.
+     *
+     * @param field Il campo in cui cercare.
+     * @param keyword La parola chiave.
+     * @param caseSensitive <code>true</code> per distinguere maiuscole e
+     *        minuscole.
+     * @return i termini corrispondenti
+     */
+    private List<Term> findTerms(int field, String keyword, boolean caseSensitive) {
+        String upper = keyword.toUpperCase();
+        Collection<Term> candidates;
+
+        if (field == TAGS || upper.length() == GRAM_LENGTH) {
+            candidates = grams[field].get(upper);
+        } else if (upper.length() < GRAM_LENGTH) {
+            candidates = new HashSet<Term>();
+            for (Map.Entry<String, ArrayList<Term>> entry : grams[field].entrySet()) {
+                if (entry.getKey().indexOf(upper) != -1) {
+                    candidates.addAll(entry.getValue());
+                }
+            }
+        } else {
+            candidates = null;
+            for (String gram : getGrams(field, upper)) {
+                ArrayList<Term> terms = grams[field].get(gram);
+                if (terms == null) {
+                    // nessun termine contiene la parola chiave
+                    return Collections.<Term> emptyList();
+                }
+
+                if (candidates == null || terms.size() < candidates.size()) {
+                    candidates = terms;
+                }
+            }
+        }
+
+        if (candidates == null) {
+            return Collections.<Term> emptyList();
+        }
+
+        ArrayList<Term> found = new ArrayList<Term>();
+        for (Term term : candidates) {
+            String text = caseSensitive ? term.text : term.upper;
+            String key = caseSensitive ? keyword : upper;
+
+            // i tag vanno confrontati per intero, gli altri campi per
+            // sottostringa
+            if (field == TAGS ? text.equals(key) : text.indexOf(key) != -1) {
+                found.add(term);
+            }
+        }
+
+        return found;
+    }
+
+    private void addGrams(int field, Term term) {
+        for (String gram : getGrams(field, term.upper)) {
+            ArrayList<Term> terms = grams[field].get(gram);
+            if (terms == null) {
+                terms = new ArrayList<Term>(2);
+                grams[field].put(gram, terms);
+            }
+            terms.add(term);
+        }
+    }
+
+    private void removeGrams(int field, Term term) {
+        for (String gram : getGrams(field, term.upper)) {
+            ArrayList<Term> terms = grams[field].get(gram);
+            terms.remove(term);
+            if (terms.isEmpty()) {
+                grams[field].remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Restituisce i trigrammi distinti del testo indicato.
+     *
+     * @param field Il campo a cui appartiene il testo.
+     * @param upper Il testo, in maiuscolo.
+     * @return i trigrammi del testo, oppure il testo stesso se e' un tag o
+     *         se e' piu' corto di un trigramma
+     */
+    private static HashSet<String> getGrams(int field, String upper) {
+        HashSet<String> grams = new HashSet<String>();
+        if (field == TAGS || upper.length() <= GRAM_LENGTH) {
+            grams.add(upper);
+            return grams;
+        }
+
+        for (int i = 0; i + GRAM_LENGTH <= upper.length(); i++) {
+            grams.add(upper.substring(i, i + GRAM_LENGTH));
+        }
+
+        return grams;
+    }
+
+    /**
+     * Restituisce la generazione del database a cui corrisponde l'indice,
+     * cioe' l'ultima modifica registrata che l'indice ha applicato.
+     *
+     * @return la generazione del database a cui corrisponde l'indice
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Imposta la generazione del database a cui corrisponde l'indice.
+     *
+     * @param generation L'ultima modifica registrata applicata all'indice.
+     */
+    public synchronized void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    /**
+     * Salva l'indice nel file indicato. L'indice viene scritto in un file
+     * temporaneo che poi sostituisce quello indicato, in modo che
+     * un'interruzione non lasci mai un file incompleto.
+     *
+     * @param file Il file in cui salvare l'indice.
+     * @param database L'identificativo del database indicizzato.
+     * @param generation La generazione del database a cui corrisponde
+     *        l'indice.
+     * @throws IOException se il file non puo' essere scritto
+     */
+    public synchronized void save(File file, String database, long generation) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            writeString(output, database);
+            output.writeLong(generation);
+
+            output.writeInt(documents.size());
+            for (Integer id : documents.keySet()) {
+                Document document = documents.get(id);
+
+                output.writeInt(id);
+                writeString(output, document.name);
+                writeString(output, document.category);
+
+                for (int field = 0; field < FIELDS; field++) {
+                    output.writeInt(document.terms[field].length);
+                    for (int j = 0; j < document.terms[field].length; j++) {
+                        writeString(output, document.terms[field][j]);
+                        output.writeInt(document.frequencies[field][j]);
+                    }
+                }
+            }
+        } finally {
+            output.close();
+        }
+
+        // sostituisco il vecchio file
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            temp.delete();
+            throw new IOException("cannot replace " + file);
+        }
+
+        this.generation = generation;
+    }
+
+    /**
+     * Legge l'indice salvato nel file indicato. Il file viene copiato in un
+     * buffer in memoria e letto in un'unica passata: non viene mappato,
+     * perche' su Windows un file mappato non puo' essere sostituito da
+     * {@link #save(File, String, long)} finche' la mappatura non viene
+     * rilasciata dal garbage collector.
+     *
+     * @param file Il file da leggere.
+     * @param database L'identificativo del database a cui deve corrispondere
+     *        l'indice.
+     * @return l'indice letto, oppure <code>null</code> se il file non esiste,
+     *         non e' valido o appartiene ad un altro database
+     */
+    public static SearchIndex load(File file, String database) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        FileInputStream input = null;
+
+        try {
+            input = new FileInputStream(file);
+            FileChannel channel = input.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("file too large");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                System.err.println("invalid search index file: " + file);
+                return null;
+            }
+
+            if (!readString(buffer).equals(database)) {
+                // l'indice appartiene ad un altro database
+                return null;
+            }
+
+            SearchIndex index = new SearchIndex();
+            index.generation = buffer.getLong();
+
+            int size = buffer.getInt();
+            for (int i = 0; i < size; i++) {
+                int id = buffer.getInt();
+                Document document = new Document(readString(buffer), readString(buffer));
+
+                for (int field = 0; field < FIELDS; field++) {
+                    int terms = buffer.getInt();
+                    document.terms[field] = new String[terms];
+                    document.frequencies[field] = new int[terms];
+
+                    for (int j = 0; j < terms; j++) {
+                        document.terms[field][j] = readString(buffer);
+                        document.frequencies[field][j] = buffer.getInt();
+                    }
+                }
+
+                index.add(id, document);
+            }
+
+            return index;
+        } catch (IOException ex) {
+            System.err.println("cannot read search index: " + ex);
+            return null;
+        } catch (RuntimeException ex) {
+            // file troncato o danneggiato
+            System.err.println("corrupted search index file: " + file);
+            return null;
+        } finally {
+            try {
+                if (input != null) {
+                    input.close();
+                }
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        output.writeInt(string.length());
+        output.writeChars(string);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        char[] chars = new char[buffer.getInt()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = buffer.getChar();
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Restituisce il numero di snippet indicizzati.
+     *
+     * @return il numero di snippet indicizzati
+     */
+    public synchronized int size() {
+        return documents.size();
+    }
+
+    /**
+     * Suddivide il testo nei termini composti da lettere, cifre e
+     * <code>_</code>.
+     *
+     * @param text Il testo da suddividere (puo' essere <code>null</code>).
+     * @return i termini distinti contenuti nel testo, con il numero di
+     *         occorrenze di ognuno
+     */
+    static HashMap<String, Integer> tokenize(String text) {
+        HashMap<String, Integer> terms = new HashMap<String, Integer>();
+        if (text == null) {
+            return terms;
+        }
+
+        int start = -1;
+
+        for (int i = 0; i <= text.length(); i++) {
+            boolean word = i < text.length() && isWordCharacter(text.charAt(i));
+
+            if (word && start == -1) {
+                start = i;
+            } else if (!word && start != -1) {
+                String term = text.substring(start, i);
+                Integer count = terms.get(term);
+                terms.put(term, count == null ? 1 : count + 1);
+                start = -1;
+            }
+        }
+
+        return terms;
+    }
+
+    /**
+     * Indica se il carattere fa parte dei termini: gli identificatori
+     * <code>snake_case</code> vengono indicizzati come un unico termine.
+     *
+     * @param c Il carattere.
+     * @return <code>true</code> per lettere, cifre e <code>_</code>
+     */
+    private static boolean isWordCharacter(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Restituisce i valori distinti dell'array indicato, ognuno con una sola
+     * occorrenza. I valori nulli o vuoti vengono ignorati.
+     *
+     * @param values I valori (puo' essere <code>null</code>).
+     * @return i valori distinti
+     */
+    private static HashMap<String, Integer> distinct(String[] values) {
+        HashMap<String, Integer> terms = new HashMap<String, Integer>();
+        if (values == null) {
+            return terms;
+        }
+
+        for (String value : values) {
+            if (value != null && value.length() > 0) {
+                terms.put(value, 1);
+            }
+        }
+
+        return terms;
+    }
+
+    /** Un termine del vocabolario con l'elenco degli snippet che lo contengono. */
+    private static class Term {
+        final String text;
+        final String upper;
+        final PostingList postings = new PostingList();
+
+        Term(String text) {
+            this.text = text;
+            this.upper = text.toUpperCase();
+        }
+    }
+
+    /** I dati di uno snippet necessari per costruire i risultati. */
+    private static class Document {
+        final String name;
+        String category;
+        final String[][] terms = new String[FIELDS][];
+        final int[][] frequencies = new int[FIELDS][];
+        final int[] lengths = new int[FIELDS];
+
+        Document(String name, String category) {
+            this.name = name;
+            this.category = category;
+        }
+
+        void setTerms(int field, HashMap<String, Integer> counts) {
+            terms[field] = counts.keySet().toArray(new String[counts.size()]);
+            frequencies[field] = new int[terms[field].length];
+
+            for (int i = 0; i < terms[field].length; i++) {
+                frequencies[field][i] = counts.get(terms[field][i]);
+            }
+        }
+    }
+
+    /**
+     * Elenco ordinato di identificativi, con il numero di occorrenze del
+     * termine in ognuno, memorizzato in due array di int paralleli.
+     */
+    static class PostingList {
+        private int[] ids = new int[2];
+        private int[] frequencies = new int[2];
+        private int size = 0;
+
+        void add(int id, int frequency) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                frequencies[position] = frequency;
+                return;
+            }
+
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(frequencies, position, frequencies, position + 1, size - position);
+            ids[position] = id;
+            frequencies[position] = frequency;
+            size++;
+        }
+
+        void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return;
+            }
+
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            System.arraycopy(frequencies, position + 1, frequencies, position, size - position - 1);
+            size--;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int id(int index) {
+            return ids[index];
+        }
+
+        int frequency(int index) {
+            return frequencies[index];
+        }
+
+        void addTo(Collection<Integer> collection) {
+            for (int i = 0; i < size; i++) {
+                collection.add(ids[i]);
+            }
+        }
+    }
+
+}
@@ -16,17 +16,38 @@
 package jcodecollector.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
 import jcodecollector.common.bean.Snippet;
 
+/**
+ * I risultati dell'ultima ricerca. I metodi sono synchronized perche' i
+ * risultati vengono modificati anche dal thread di scrittura del database
+ * (vedi {@link AsyncController}).
+ */
 public class SearchResults {
     
     /** La mappa ordinata che contiene gli snippet suddivisi per categoria. */
     private TreeMap<String, TreeSet<String>> data = null;
 
+    /**
+     * La posizione di ogni snippet nei risultati ordinati per rilevanza, vuota
+     * se i risultati non sono ordinati.
+     */
+    private HashMap<String, Integer> ranking = new HashMap<String, Integer>();
+
+    /**
+     * Il numero di snippet trovati dalla ricerca, compresi quelli esclusi dal
+     * limite dei risultati.
+     */
+    private int total = 0;
+
     private static SearchResults searchResults = new SearchResults();
 
     public static SearchResults getInstance() {
@@ -37,27 +58,74 @@ public class SearchResults {
         this.data = new TreeMap<String, TreeSet<String>>();
     }
 
-    public ArrayList<String> getSnippets(String category) {
+    /**
+     * Restituisce gli snippet trovati nella categoria indicata, dal piu'
+     * rilevante se i risultati sono ordinati per rilevanza, altrimenti in
+     * ordine alfabetico.
+     * 
+     * @param category La categoria.
+     * @return gli snippet trovati nella categoria indicata
+     */
+    public synchronized ArrayList<String> getSnippets(String category) {
         ArrayList<String> names = new ArrayList<String>();
         TreeSet<String> set = data.get(category);
         if (set != null) {
             names.addAll(data.get(category));
         }
 
+        if (!ranking.isEmpty()) {
+            // gli snippet aggiunti dopo la ricerca finiscono in fondo
+            Collections.sort(names, new Comparator<String>() {
+                public int compare(String first, String second) {
+                    return rankOf(first) - rankOf(second);
+                }
+            });
+        }
+
         return names;
     }
 
-    public ArrayList<String> getCategories() {
+    private int rankOf(String name) {
+        Integer rank = ranking.get(name);
+        return rank == null ? Integer.MAX_VALUE : rank;
+    }
+
+    /**
+     * Indica se i risultati sono ordinati per rilevanza.
+     * 
+     * @return <code>true</code> se i risultati sono ordinati per rilevanza,
+     *         <code>false</code> altrimenti
+     */
+    public synchronized boolean isRanked() {
+        return !ranking.isEmpty();
+    }
+
+    public synchronized ArrayList<String> getCategories() {
         return new ArrayList<String>(data.keySet());
     }
 
+    /**
+     * Restituisce gli snippet trovati suddivisi per categoria, ciascuna
+     * ordinata come in {@link #getSnippets(String)}.
+     * 
+     * @return gli snippet trovati suddivisi per categoria
+     */
+    public synchronized LinkedHashMap<String, ArrayList<String>> getCatalog() {
+        LinkedHashMap<String, ArrayList<String>> catalog = new LinkedHashMap<String, ArrayList<String>>();
+        for (String category : data.keySet()) {
+            catalog.put(category, getSnippets(category));
+        }
+
+        return catalog;
+    }
+
     /**
      * Richiede al database la cancellazione di tutti gli snippet della
      * categoria indicata trovati con l'ultima ricerca.
      * 
      * @param category La categoria degli snippet da cancellare.
      */
-    public boolean removeCategory(String category) {
+    public synchronized boolean removeCategory(String category) {
         if (!data.containsKey(category)) {
             return false;
         }
@@ -72,7 +140,7 @@ public class SearchResults {
         return success;
     }
 
-    public boolean renameCategory(String oldName, String newName) {
+    public synchronized boolean renameCategory(String oldName, String newName) {
         if (!data.containsKey(oldName)) {
             return false;
         }
@@ -99,7 +167,7 @@ public class SearchResults {
                 new ArrayList<String>(data.get(newName)), newName);
     }
 
-    public boolean removeSnippet(String name) {
+    public synchronized boolean removeSnippet(String name) {
         Iterator<String> iterator = data.keySet().iterator();
         while (iterator.hasNext()) {
             String key = iterator.next();
@@ -113,7 +181,19 @@ public class SearchResults {
         return false;
     }
 
-    public boolean updateSnippet(Snippet oldSnippet, Snippet newSnippet) {
+    public synchronized boolean updateSnippet(Snippet oldSnippet, Snippet newSnippet) {
+        snippetUpdated(oldSnippet, newSnippet);
+        return DBMS.getInstance().updateSnippet(oldSnippet, newSnippet);
+    }
+
+    /**
+     * Aggiorna i risultati della ricerca dopo la modifica di uno snippet,
+     * senza modificare il database.
+     * 
+     * @param oldSnippet Lo snippet prima della modifica.
+     * @param newSnippet Lo snippet modificato.
+     */
+    public synchronized void snippetUpdated(Snippet oldSnippet, Snippet newSnippet) {
         data.get(oldSnippet.getCategory()).remove(oldSnippet.getName());
 
         if (data.containsKey(newSnippet.getCategory())) {
@@ -123,23 +203,74 @@ public class SearchResults {
             value.add(newSnippet.getName());
             data.put(newSnippet.getCategory(), value);
         }
+    }
 
-        return DBMS.getInstance().updateSnippet(oldSnippet, newSnippet);
+    public synchronized boolean moveSnippet(String name, String category) {
+        for (TreeSet<String> value : data.values()) {
+            if (value.remove(name)) {
+                break;
+            }
+        }
+
+        if (data.containsKey(category)) {
+            data.get(category).add(name);
+        } else {
+            TreeSet<String> value = new TreeSet<String>();
+            value.add(name);
+            data.put(category, value);
+        }
+
+        return DBMS.getInstance().moveSnippet(name, category);
+    }
+
+    public synchronized void setData(TreeMap<String, TreeSet<String>> data) {
+        this.data = data;
+        this.ranking.clear();
     }
 
-    public void setData(TreeMap<String, TreeSet<String>> data) {
+    /**
+     * Imposta i risultati di una ricerca ordinati per rilevanza.
+     * 
+     * @param hits I risultati della ricerca, dal piu' rilevante.
+     */
+    public synchronized void setHits(SearchHits hits) {
+        TreeMap<String, TreeSet<String>> data = new TreeMap<String, TreeSet<String>>();
+        HashMap<String, Integer> ranking = new HashMap<String, Integer>();
+
+        for (SearchHit hit : hits) {
+            TreeSet<String> set = data.get(hit.getCategory());
+            if (set == null) {
+                set = new TreeSet<String>();
+                data.put(hit.getCategory(), set);
+            }
+            set.add(hit.getName());
+            ranking.put(hit.getName(), ranking.size());
+        }
+
         this.data = data;
+        this.ranking = ranking;
+        this.total = hits.getTotal();
+    }
+
+    /**
+     * Restituisce il numero di snippet trovati dalla ricerca, compresi quelli
+     * esclusi dal limite dei risultati.
+     * 
+     * @return il numero di snippet trovati
+     */
+    public synchronized int countMatches() {
+        return Math.max(total, countSnippets());
     }
 
-    public int size() {
+    public synchronized int size() {
         return data.size();
     }
 
-    public int countCategories() {
+    public synchronized int countCategories() {
         return data.keySet().size();
     }
 
-    public int countSnippets() {
+    public synchronized int countSnippets() {
         int n = 0;
 
         for (String s : data.keySet()) {
@@ -149,11 +280,13 @@ public class SearchResults {
         return n;
     }
 
-    public void clear() {
+    public synchronized void clear() {
         data.clear();
+        ranking.clear();
+        total = 0;
     }
 
-    public boolean setSyntax(String newSyntax, String category, String selected) {
+    public synchronized boolean setSyntax(String newSyntax, String category, String selected) {
         if (!data.containsKey(category)) {
             return false;
         }
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
+import jcodecollector.listener.CategoryListener;
+import jcodecollector.listener.SnippetListener;
+
+/**
+ * Cache degli snippet letti dal database. Gli snippet sono indicizzati per
+ * nome e, quando la dimensione complessiva supera il limite indicato, vengono
+ * eliminati quelli usati meno di recente. La dimensione di uno snippet e' la
+ * lunghezza del suo codice e del suo commento, quindi uno snippet molto lungo
+ * occupa molto piu' spazio di uno di poche righe; uno snippet piu' grande
+ * dell'intera cache (il limite
+ * {@link jcodecollector.util.ApplicationConstants#CODE_LENGTH} del database
+ * supera la dimensione usata da {@link Controller}) non viene memorizzato.
+ * <p>
+ * La cache riceve le notifiche di {@link jcodecollector.State} e scarta gli
+ * snippet modificati, rinominati o rimossi e quelli delle categorie
+ * rinominate o rimosse. Gli snippet vengono sempre restituiti in copia.
+ * <p>
+ * Chi legge uno snippet dal database per metterlo in cache deve prima
+ * leggere la versione della cache con {@link #getVersion()} e poi inserirlo
+ * con {@link #put(Snippet, long)}: se nel frattempo la cache e' stata
+ * invalidata, lo snippet letto potrebbe essere gia' vecchio e non viene
+ * inserito.
+ *
+ * @author Alessandro Cocco
+ */
+public class SnippetCache implements SnippetListener, CategoryListener {
+
+    /** Gli snippet in cache, dal meno usato di recente. */
+    private LinkedHashMap<String, Snippet> snippets;
+
+    /** La dimensione massima complessiva degli snippet in cache. */
+    private long maxWeight;
+
+    /** La dimensione complessiva degli snippet in cache. */
+    private long weight = 0;
+
+    /** Il numero di richieste soddisfatte dalla cache. */
+    private long hits = 0;
+
+    /** Il numero di richieste non soddisfatte dalla cache. */
+    private long misses = 0;
+
+    /** Il numero di invalidazioni della cache (vedi {@link #getVersion()}). */
+    private long version = 0;
+
+    /**
+     * Crea una cache vuota.
+     *
+     * @param maxWeight La dimensione massima complessiva (in caratteri) degli
+     *        snippet in cache.
+     */
+    public SnippetCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+        this.snippets = new LinkedHashMap<String, Snippet>(16, 0.75f, true);
+    }
+
+    /**
+     * Restituisce una copia dello snippet indicato, se e' presente in cache.
+     *
+     * @param name Il nome dello snippet.
+     * @return una copia dello snippet, oppure <code>null</code> se lo snippet
+     *         non e' in cache
+     */
+    public synchronized Snippet get(String name) {
+        Snippet snippet = snippets.get(name);
+
+        if (snippet == null) {
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return copyOf(snippet);
+    }
+
+    /**
+     * Inserisce in cache una copia dello snippet indicato. Uno snippet piu'
+     * grande dell'intera cache non viene memorizzato.
+     *
+     * @param snippet Lo snippet da inserire.
+     */
+    public synchronized void put(Snippet snippet) {
+        discard(snippet.getName());
+
+        long size = weightOf(snippet);
+        if (size > maxWeight) {
+            return;
+        }
+
+        snippets.put(snippet.getName(), copyOf(snippet));
+        weight += size;
+
+        // elimino gli snippet usati meno di recente
+        Iterator<Snippet> iterator = snippets.values().iterator();
+        while (weight > maxWeight && iterator.hasNext()) {
+            weight -= weightOf(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Inserisce in cache una copia dello snippet indicato, come
+     * {@link #put(Snippet)}, solo se la cache non e' stata invalidata dopo
+     * che lo snippet e' stato letto.
+     *
+     * @param snippet Lo snippet da inserire.
+     * @param version La versione della cache letta con {@link #getVersion()}
+     *        prima di leggere lo snippet dal database.
+     */
+    public synchronized void put(Snippet snippet, long version) {
+        if (version == this.version) {
+            put(snippet);
+        }
+    }
+
+    /**
+     * Restituisce la versione della cache, che cambia ogni volta che uno
+     * snippet viene modificato o scartato.
+     *
+     * @return la versione della cache
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Aggiorna lo stato di blocco di uno snippet in cache.
+     *
+     * @param name Il nome dello snippet.
+     * @param locked Il nuovo stato dello snippet.
+     */
+    public synchronized void setLocked(String name, boolean locked) {
+        version++;
+
+        Snippet snippet = snippets.get(name);
+        if (snippet != null) {
+            snippet.setLocked(locked);
+        }
+    }
+
+    /**
+     * Rimuove dalla cache lo snippet indicato.
+     *
+     * @param name Il nome dello snippet.
+     */
+    public synchronized void remove(String name) {
+        version++;
+        discard(name);
+    }
+
+    /**
+     * Rimuove dalla cache lo snippet indicato senza cambiare la versione
+     * della cache.
+     *
+     * @param name Il nome dello snippet.
+     */
+    private void discard(String name) {
+        Snippet snippet = snippets.remove(name);
+        if (snippet != null) {
+            weight -= weightOf(snippet);
+        }
+    }
+
+    /**
+     * Rimuove dalla cache tutti gli snippet della categoria indicata.
+     *
+     * @param category La categoria.
+     */
+    public synchronized void removeCategory(String category) {
+        version++;
+
+        Iterator<Map.Entry<String, Snippet>> iterator = snippets.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Snippet snippet = iterator.next().getValue();
+            if (snippet.getCategory().equalsIgnoreCase(category)) {
+                weight -= weightOf(snippet);
+                iterator.remove();
+            }
+        }
+    }
+
+    /** Svuota la cache. */
+    public synchronized void clear() {
+        version++;
+        snippets.clear();
+        weight = 0;
+    }
+
+    /**
+     * Restituisce il numero di richieste soddisfatte dalla cache.
+     *
+     * @return il numero di richieste soddisfatte dalla cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Restituisce il numero di richieste non soddisfatte dalla cache.
+     *
+     * @return il numero di richieste non soddisfatte dalla cache
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Restituisce il numero di snippet in cache.
+     *
+     * @return il numero di snippet in cache
+     */
+    public synchronized int size() {
+        return snippets.size();
+    }
+
+    /**
+     * Restituisce la dimensione complessiva degli snippet in cache.
+     *
+     * @return la dimensione complessiva degli snippet in cache
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "snippets=" + snippets.size() + ", weight=" + weight + ", hits=" + hits + ", misses=" + misses;
+    }
+
+    private static long weightOf(Snippet snippet) {
+        long size = snippet.getName().length();
+        size += snippet.getCode() == null ? 0 : snippet.getCode().length();
+        size += snippet.getComment() == null ? 0 : snippet.getComment().length();
+        return size;
+    }
+
+    private static Snippet copyOf(Snippet snippet) {
+        return new Snippet(snippet.getID(), snippet.getCategory(), snippet.getName(), snippet.getTags(), snippet.getCode(),
+                snippet.getComment(), snippet.getSyntax(), snippet.isLocked());
+    }
+
+    /** @see SnippetListener#snippetEdited(Snippet) */
+    public void snippetEdited(Snippet snippet) {
+        remove(snippet.getName());
+    }
+
+    /** @see SnippetListener#snippetRenamed(String, String) */
+    public void snippetRenamed(String oldName, String newName) {
+        remove(oldName);
+        remove(newName);
+    }
+
+    /** @see SnippetListener#snippetRemoved(SnippetHeader) */
+    public void snippetRemoved(SnippetHeader snippet) {
+        remove(snippet.getName());
+    }
+
+    /** @see SnippetListener#updateSnippetStatus(boolean, boolean, boolean) */
+    public void updateSnippetStatus(boolean validated, boolean saved, boolean locked) {
+        // lo stato di blocco viene aggiornato da setLocked()
+    }
+
+    /** @see SnippetListener#syntaxRenamed(String, String) */
+    public void syntaxRenamed(String newName, String category) {
+        removeCategory(category);
+    }
+
+    /** @see CategoryListener#categoryRenamed(String, String) */
+    public void categoryRenamed(String oldName, String newName) {
+        removeCategory(oldName);
+    }
+
+    /** @see CategoryListener#categoryRemoved(String) */
+    public void categoryRemoved(String name) {
+        removeCategory(name);
+    }
+
+    /** @see CategoryListener#categoriesUpdated(String) */
+    public void categoriesUpdated(String selected) {
+        // nulla da fare
+    }
+
+}
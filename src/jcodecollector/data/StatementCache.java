@@ -0,0 +1,114 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+
+/**
+ * Registro dei {@link PreparedStatement} usati da {@link DBMS}. Ogni query
+ * viene compilata da Derby una sola volta per connessione e riutilizzata nelle
+ * chiamate successive; tutti gli statement vengono chiusi insieme alla
+ * connessione.
+ *
+ * @author Alessandro Cocco
+ */
+public class StatementCache {
+
+    /** La connessione su cui vengono preparati gli statement. */
+    private Connection connection;
+
+    /** Gli statement gia' preparati, indicizzati per testo della query. */
+    private HashMap<String, PreparedStatement> statements;
+
+    /**
+     * Crea un registro vuoto per la connessione indicata.
+     *
+     * @param connection La connessione su cui preparare gli statement.
+     */
+    public StatementCache(Connection connection) {
+        this.connection = connection;
+        this.statements = new HashMap<String, PreparedStatement>();
+    }
+
+    /**
+     * Restituisce la connessione su cui vengono preparati gli statement.
+     *
+     * @return la connessione del registro
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Restituisce lo statement relativo alla query indicata, preparandolo solo
+     * se non e' gia' presente nel registro. I parametri di uno statement
+     * riutilizzato vengono azzerati.
+     *
+     * @param query La query (fissa) da preparare.
+     * @return lo statement pronto per essere eseguito
+     * @throws SQLException se la query non puo' essere preparata
+     */
+    public PreparedStatement prepare(String query) throws SQLException {
+        return prepare(query, false);
+    }
+
+    /**
+     * Restituisce lo statement relativo alla query indicata, come
+     * {@link #prepare(String)}.
+     *
+     * @param query La query (fissa) da preparare.
+     * @param generatedKeys <code>true</code> se lo statement deve rendere
+     *        disponibili le chiavi generate da un insert.
+     * @return lo statement pronto per essere eseguito
+     * @throws SQLException se la query non puo' essere preparata
+     */
+    public PreparedStatement prepare(String query, boolean generatedKeys) throws SQLException {
+        // lo stesso testo puo' essere preparato in entrambi i modi
+        String key = generatedKeys ? "keys:" + query : query;
+        PreparedStatement statement = statements.get(key);
+
+        if (statement == null) {
+            if (generatedKeys) {
+                statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
+            } else {
+                statement = connection.prepareStatement(query);
+            }
+            statements.put(key, statement);
+        } else {
+            statement.clearParameters();
+        }
+
+        return statement;
+    }
+
+    /** Chiude tutti gli statement preparati e svuota il registro. */
+    public void close() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException ex) {
+                System.err.println("cannot close statement: " + ex);
+            }
+        }
+
+        statements.clear();
+    }
+
+}
@@ -16,11 +16,14 @@
 package jcodecollector.data.settings;
 
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.io.File;
 
 import javax.swing.filechooser.FileSystemView;
 
+import jcodecollector.data.DerbyServer;
+import jcodecollector.util.ApplicationConstants;
 import jcodecollector.util.OS;
 
 public class ApplicationSettings {
@@ -63,13 +66,38 @@ public class ApplicationSettings {
 	private boolean searchInCodeEnabled = true;
 	private boolean searchInCommentEnabled = true;
 	private boolean searchCaseSensitive = false;
+	private boolean searchAsYouTypeEnabled = true;
 	private boolean lineNumbersEnabled = false;
 	private boolean commentPanelVisible = true;
 	private boolean autoHideCommentEnabled = false;
 
+	/** La lunghezza massima del codice modificabile nell'editor. */
+	private int codeLengthLimit = DEFAULT_CODE_LENGTH_LIMIT;
+
+	/** La lunghezza massima predefinita del codice nell'editor. */
+	public static final int DEFAULT_CODE_LENGTH_LIMIT = 1000000;
+
+	/**
+	 * <code>true</code> per accedere al database attraverso il server di rete
+	 * di Derby, in modo che piu' processi possano usarlo contemporaneamente.
+	 */
+	private boolean networkServerEnabled = false;
+
+	/** La porta del server di rete di Derby. */
+	private int networkServerPort = DerbyServer.DEFAULT_PORT;
+
+	/** Il numero massimo di connessioni aperte verso il database. */
+	private int connectionPoolSize = DEFAULT_CONNECTION_POOL_SIZE;
+
+	/** Il numero massimo predefinito di connessioni verso il database. */
+	public static final int DEFAULT_CONNECTION_POOL_SIZE = Runtime.getRuntime().availableProcessors() + 1;
+
 	/** Il nome del database */
 	public static final String DB_DIR_NAME = "JCODECOLLECTOR_DB";
 
+	/** Il file dell'indice di ricerca, salvato accanto al database. */
+	public static final String INDEX_FILE_NAME = "JCODECOLLECTOR_INDEX";
+
 	/** Default path of database. */
 	public static final String DATABASE_PATH_DEFAULT;
 
@@ -80,7 +108,7 @@ public class ApplicationSettings {
 	private static ApplicationSettings settings = new ApplicationSettings();
 
 	static {
-		String userDirectory = FileSystemView.getFileSystemView().getDefaultDirectory().getAbsolutePath();
+		String userDirectory = getDefaultDirectory();
 		if (OS.isMacOSX()) {
 			DATABASE_PATH_DEFAULT = userDirectory + "/Library/Application Support/";
 			PREFERENCES_PATH_DEFAULT = userDirectory + "/Library/Preferences/com.alessandro.jcodecollector";
@@ -206,6 +234,14 @@ public class ApplicationSettings {
 		this.searchCaseSensitive = searchCaseSensitive;
 	}
 
+	public boolean isSearchAsYouTypeEnabled() {
+		return searchAsYouTypeEnabled;
+	}
+
+	public void setSearchAsYouTypeEnabled(boolean searchAsYouTypeEnabled) {
+		this.searchAsYouTypeEnabled = searchAsYouTypeEnabled;
+	}
+
 	public boolean isLineNumbersEnabled() {
 		return lineNumbersEnabled;
 	}
@@ -223,6 +259,21 @@ public class ApplicationSettings {
 	}
 
 	public String getUserHome() {
+		return getDefaultDirectory();
+	}
+
+	/**
+	 * Restituisce la cartella predefinita dell'utente. Senza interfaccia
+	 * grafica (riga di comando e server) Swing non viene usato e la cartella
+	 * e' quella indicata dalla proprieta' <code>user.home</code>.
+	 * 
+	 * @return la cartella predefinita dell'utente
+	 */
+	private static String getDefaultDirectory() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return System.getProperty("user.home");
+		}
+
 		return FileSystemView.getFileSystemView().getDefaultDirectory().getAbsolutePath();
 	}
 
@@ -243,4 +294,49 @@ public class ApplicationSettings {
 		return autoHideCommentEnabled;
 	}
 
+	/**
+	 * Restituisce la lunghezza massima del codice modificabile nell'editor.
+	 * 
+	 * @return la lunghezza massima del codice nell'editor, mai superiore a
+	 *         {@link ApplicationConstants#CODE_LENGTH}
+	 */
+	public int getCodeLengthLimit() {
+		return codeLengthLimit;
+	}
+
+	public void setCodeLengthLimit(int codeLengthLimit) {
+		this.codeLengthLimit = Math.max(1, Math.min(codeLengthLimit, ApplicationConstants.CODE_LENGTH));
+	}
+
+	public boolean isNetworkServerEnabled() {
+		return networkServerEnabled;
+	}
+
+	public void setNetworkServerEnabled(boolean networkServerEnabled) {
+		this.networkServerEnabled = networkServerEnabled;
+	}
+
+	public int getNetworkServerPort() {
+		return networkServerPort;
+	}
+
+	public void setNetworkServerPort(int networkServerPort) {
+		this.networkServerPort = networkServerPort;
+	}
+
+	/**
+	 * Restituisce il numero massimo di connessioni aperte verso il database.
+	 * Una connessione e' sempre riservata alle modifiche, le altre vengono
+	 * usate dalle letture che possono essere eseguite in parallelo.
+	 * 
+	 * @return il numero massimo di connessioni (almeno 2)
+	 */
+	public int getConnectionPoolSize() {
+		return connectionPoolSize;
+	}
+
+	public void setConnectionPoolSize(int connectionPoolSize) {
+		this.connectionPoolSize = Math.max(2, connectionPoolSize);
+	}
+
 }
@@ -23,6 +23,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Properties;
 
+import jcodecollector.data.DerbyServer;
 import jcodecollector.util.GeneralInfo;
 
 public class ApplicationSettingsManager {
@@ -91,9 +92,32 @@ public class ApplicationSettingsManager {
 		settings.setSearchInCodeEnabled(Boolean.parseBoolean(properties.getProperty("search_code", "true")));
 		settings.setSearchInCommentEnabled(Boolean.parseBoolean(properties.getProperty("search_comment", "false")));
 		settings.setSearchCaseSensitive(Boolean.parseBoolean(properties.getProperty("search_case_sensitive", "false")));
+		settings.setSearchAsYouTypeEnabled(Boolean.parseBoolean(properties.getProperty("search_as_you_type", "true")));
 		settings.setLineNumbersEnabled(Boolean.parseBoolean(properties.getProperty("show_line_numbers", "true")));
 		settings.setCommentPanelVisible(Boolean.parseBoolean(properties.getProperty("show_comment_panel", "true")));
 		settings.setAutoHideCommentEnabled(Boolean.parseBoolean(properties.getProperty("auto_hide_comment_panel", "false")));
+
+		try {
+			// recupero il limite di lunghezza del codice nell'editor
+			settings.setCodeLengthLimit(Integer.parseInt(properties.getProperty("code_length_limit")));
+		} catch (NumberFormatException ex) {
+			settings.setCodeLengthLimit(ApplicationSettings.DEFAULT_CODE_LENGTH_LIMIT);
+		}
+
+		// accesso al database attraverso il server di rete di Derby
+		settings.setNetworkServerEnabled(Boolean.parseBoolean(properties.getProperty("network_server", "false")));
+
+		try {
+			settings.setNetworkServerPort(Integer.parseInt(properties.getProperty("network_server_port")));
+		} catch (NumberFormatException ex) {
+			settings.setNetworkServerPort(DerbyServer.DEFAULT_PORT);
+		}
+
+		try {
+			settings.setConnectionPoolSize(Integer.parseInt(properties.getProperty("connection_pool_size")));
+		} catch (NumberFormatException ex) {
+			settings.setConnectionPoolSize(ApplicationSettings.DEFAULT_CONNECTION_POOL_SIZE);
+		}
 	}
 
 	private static void saveApplicationSettings(File file) {
@@ -114,9 +138,14 @@ public class ApplicationSettingsManager {
 		properties.put("search_code", new Boolean(settings.isSearchInCodeEnabled()).toString());
 		properties.put("search_comment", new Boolean(settings.isSearchInCommentEnabled()).toString());
 		properties.put("search_case_sensitive", new Boolean(settings.isSearchCaseSensitive()).toString());
+		properties.put("search_as_you_type", new Boolean(settings.isSearchAsYouTypeEnabled()).toString());
 		properties.put("show_line_numbers", new Boolean(settings.isLineNumbersEnabled()).toString());
 		properties.put("show_comment_panel", new Boolean(settings.isCommentPanelVisible()).toString());
 		properties.put("auto_hide_comment_panel", new Boolean(settings.isAutoHideCommentEnabled()).toString());
+		properties.put("code_length_limit", new Integer(settings.getCodeLengthLimit()).toString());
+		properties.put("network_server", new Boolean(settings.isNetworkServerEnabled()).toString());
+		properties.put("network_server_port", new Integer(settings.getNetworkServerPort()).toString());
+		properties.put("connection_pool_size", new Integer(settings.getConnectionPoolSize()).toString());
 
 		try {
 			properties.store(new FileWriter(file), "jCodeCollector " + GeneralInfo.APPLICATION_VERSION);
@@ -58,6 +58,25 @@ public class LimitedSyntaxDocument extends RSyntaxDocument {
 		this(SyntaxConstants.SYNTAX_STYLE_NONE, maxSize);
 	}
 
+	/**
+	 * Restituisce il massimo numero di caratteri inseribili nel documento.
+	 * 
+	 * @return il limite del documento
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Imposta il massimo numero di caratteri inseribili nel documento. Il
+	 * testo gia' presente non viene modificato.
+	 * 
+	 * @param maxSize Il nuovo limite del documento.
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
 	/**
 	 * @see javax.swing.text.PlainDocument#insertString(int, String,
 	 *      AttributeSet)
@@ -31,12 +31,12 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
@@ -55,22 +55,35 @@ import javax.swing.JPopupMenu;
 import javax.swing.JSplitPane;
 import javax.swing.JTextField;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.border.Border;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.EtchedBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileFilter;
 
 import jcodecollector.MacUtilities;
 import jcodecollector.State;
 import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
 import jcodecollector.common.bean.Syntax;
+import jcodecollector.data.AsyncController;
 import jcodecollector.data.Controller;
 import jcodecollector.data.DBMS;
+import jcodecollector.data.InsertResult;
+import jcodecollector.data.SaveQueue;
 import jcodecollector.data.SearchFilter;
+import jcodecollector.data.SearchHit;
+import jcodecollector.data.SearchHits;
 import jcodecollector.data.settings.ApplicationSettings;
 import jcodecollector.data.settings.ApplicationSettingsManager;
 import jcodecollector.io.FileManager;
+import jcodecollector.io.ImportPipeline;
+import jcodecollector.io.MappedPackage;
 import jcodecollector.io.PackageManager;
 import jcodecollector.listener.CategoryListener;
 import jcodecollector.listener.CountListener;
@@ -79,6 +92,7 @@ import jcodecollector.listener.SearchListener;
 import jcodecollector.listener.SnippetListener;
 import jcodecollector.listener.WindowListener;
 import jcodecollector.util.ApplicationConstants;
+import jcodecollector.util.ExecutorFactory;
 import jcodecollector.util.GeneralInfo;
 import jcodecollector.util.OS;
 import jcodecollector.util.Utility;
@@ -107,6 +121,9 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     /** Il componente che mostra graficamente il contenuto del database. */
     public SourceList sourceList;
 
+    /** Gestisce categorie e snippet contenuti nel {@link SourceList}. */
+    private SourceListUpdater sourceListUpdater;
+
     /** Il pannello splittato. */
     private JSplitPane split = new JSplitPane();
 
@@ -119,6 +136,25 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     /** La casella di testo usata per inserire le parole chiave della ricerca. */
     private JTextField searchTextField;
 
+    /** Il ritardo (in millisecondi) tra l'ultimo tasto premuto e la ricerca. */
+    private static final int SEARCH_DELAY = 250;
+
+    /**
+     * Il numero massimo di risultati mostrati durante la digitazione: solo
+     * la ricerca avviata con Invio restituisce tutti gli snippet trovati. La
+     * barra di stato indica quanti snippet sono stati trovati in tutto.
+     */
+    private static final int SEARCH_AS_YOU_TYPE_LIMIT = 100;
+
+    /** Avvia la ricerca quando l'utente smette di scrivere. */
+    private Timer searchTimer;
+
+    /** Esegue le ricerche in background, una alla volta. */
+    private final ExecutorService searchExecutor = ExecutorFactory.newSingleThreadExecutor("search");
+
+    /** La ricerca in attesa o in corso, i cui risultati verranno mostrati. */
+    private SearchWorker currentSearch = null;
+
     /** Il pulsante di reset della ricerca (per Windows e Linux). */
     private JButton turnOffButton;
 
@@ -134,6 +170,33 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      */
     private Controller controller = Controller.getInstance();
 
+    /**
+     * La versione asincrona del controller, usata dalle operazioni che non
+     * devono bloccare l'interfaccia (selezione, salvataggio e rimozione).
+     */
+    private AsyncController asyncController = AsyncController.getInstance();
+
+    /** Segnala all'utente le modifiche accodate che non e' stato possibile scrivere. */
+    private final SaveQueue.FailureListener saveFailureListener = new SaveQueue.FailureListener() {
+        public void saveFailed(final ArrayList<String> names) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    JOptionPane.showMessageDialog(MainFrame.this, "<html><b>Cannot save the changes to " + names + ".</b><br><br><font size=3>"
+                            + "Reload the snippets and try again.</font></html>", "Houston, we have a problem...", JOptionPane.ERROR_MESSAGE);
+                }
+            });
+        }
+    };
+
+    /** <code>true</code> mentre il salvataggio dello snippet e' in corso. */
+    private boolean saving = false;
+
+    /**
+     * <code>true</code> se e' stato richiesto un altro salvataggio mentre
+     * quello precedente era in corso: viene eseguito appena termina.
+     */
+    private boolean saveRequested = false;
+
     /** Il riferimento allo stato dell'applicazione. */
     private State state = State.getInstance();
 
@@ -152,12 +215,17 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
             addWindowListener(new WindowAdapter() {
                 public void windowClosing(WindowEvent e) {
-                    prepareAndSaveSettings();
-                    System.exit(0);
+                    if (prepareAndSaveSettings()) {
+                        System.exit(0);
+                    }
                 }
             });
         }
 
+        // le modifiche accodate vengono scritte in background: gli errori
+        // vengono segnalati all'utente appena possibile
+        controller.getSaveQueue().setFailureListener(saveFailureListener);
+
         setSize(ApplicationSettings.getInstance().getWindowSize());
         setMinimumSize(OS.isMacOSX() ? new Dimension(750, 393) : new Dimension(750, 383));
 
@@ -297,6 +365,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
 
     private void initSourceList() {
         sourceList = new SourceList();
+        sourceListUpdater = new SourceListUpdater(sourceList.getModel());
         // TODO non fare ricreare tutto ogni volta
         sourceList.setSourceListContextMenuProvider(new SourceListContextMenuProvider() {
             public JPopupMenu createContextMenu(SourceListCategory category) {
@@ -397,7 +466,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
 
         sourceList.installSourceListControlBar(controlBar);
         sourceList.addSourceListSelectionListener(new SourceListSelectionListener() {
-            public void sourceListItemSelected(SourceListItem item) {
+            public void sourceListItemSelected(final SourceListItem item) {
                 if (item == null) {
                     state.setNameOfSelectedCategory(null);
                     state.setNameOfSelectedSnippet(null);
@@ -405,28 +474,22 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
                     state.updateSnippetStatus(false, false, false);
 
                     mainPanel.clear();
-                } else {
-                    // leggo lo snippet corrispondente al nome selezionato
-                    Snippet snippet = controller.getSnippet(item.getText().trim());
-
-                    // lo imposto come lo snippet di lavoro
-                    state.setPreviousSnippet(snippet);
-                    state.setNameOfSelectedCategory(snippet.getCategory());
-                    state.setNameOfSelectedSnippet(snippet.getName());
-
-                    // aggiorno l'editor
-                    mainPanel.setSnippet(snippet);
-
-                    // scrolla anche quando ci si sposta tra gli snippet
-                    // usando le frecce direzionali
-                    sourceList.scrollItemToVisible(item);
+                    return;
+                }
 
-                    state.updateSnippetStatus(true, true, snippet.isLocked());
-                    state.updateMenu(true, false);
-                    state.updateWindowStatus(false);
+                // leggo lo snippet corrispondente al nome selezionato in
+                // background: l'editor viene aggiornato quando arriva
+                asyncController.loadSnippet(item.getText().trim(), new AsyncController.Callback<Snippet>() {
+                    public void succeeded(Snippet snippet) {
+                        // nel frattempo l'utente potrebbe aver selezionato un
+                        // altro snippet
+                        if (snippet == null || sourceList.getSelectedItem() != item) {
+                            return;
+                        }
 
-                    checkAutoHideCommentPanel(snippet, false);
-                }
+                        snippetLoaded(item, snippet);
+                    }
+                });
             }
         });
 
@@ -527,6 +590,30 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     private void initSearchComponents() {
         searchTextField = new PromptTextField("", OS.isMacOSX() ? "Search" : "", 15);
         searchTextField.addActionListener(START_SEARCH_ACTION);
+
+        // ricerca durante la digitazione: la ricerca parte quando l'utente
+        // smette di scrivere per SEARCH_DELAY millisecondi
+        searchTimer = new Timer(SEARCH_DELAY, INCREMENTAL_SEARCH_ACTION);
+        searchTimer.setRepeats(false);
+        searchTextField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                // gli attributi del testo non interessano
+            }
+
+            private void textChanged() {
+                if (SearchFilter.getInstance().isSearchAsYouTypeEnabled()) {
+                    searchTimer.restart();
+                }
+            }
+        });
         searchTextField.putClientProperty("JTextField.variant", "search");
         searchTextField.putClientProperty("JTextField.Search.CancelAction", CANCEL_BUTTON_SEARCH_ACTION);
 
@@ -557,8 +644,16 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
         hideButton.addActionListener(HIDE_SEARCH_PANEL_ACTION);
     }
 
-    /** Raccoglie e salva i settaggi del programma. */
-    public void prepareAndSaveSettings() {
+    /**
+     * Raccoglie e salva i settaggi del programma e scrive nel database le
+     * modifiche ancora in coda. Da chiamare prima di uscire dall'applicazione.
+     * Se alcune modifiche non possono essere scritte l'utente sceglie se
+     * uscire comunque.
+     * 
+     * @return <code>true</code> se l'applicazione puo' terminare,
+     *         <code>false</code> se l'utente ha annullato l'uscita
+     */
+    public boolean prepareAndSaveSettings() {
         ApplicationSettings.getInstance().setWindowSize(getSize());
         ApplicationSettings.getInstance().setWindowLocation(getLocation());
         ApplicationSettings.getInstance().setSourceListWidth(split.getDividerLocation());
@@ -569,6 +664,31 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
         ApplicationSettings.getInstance().setAutoHideCommentEnabled(autoHideCommentPanelMenuItem.isSelected());
 
         ApplicationSettingsManager.saveApplicationSettings();
+
+        // scrivo le modifiche ancora in coda prima di uscire, comprese
+        // quelle inviate dal controller asincrono: gli errori vengono
+        // segnalati qui e non dall'ascoltatore della coda, che mostrerebbe il
+        // messaggio solo dopo l'uscita
+        SaveQueue queue = controller.getSaveQueue();
+        queue.setFailureListener(null);
+        controller.flush();
+
+        if (!queue.isEmpty()) {
+            int answer = JOptionPane.showConfirmDialog(this, "<html><b>Cannot save the changes to " + queue.getNames() + ".</b><br><br><font size=3>"
+                    + "If you quit now these changes will be lost. Quit anyway?</font></html>", "Houston, we have a problem...",
+                    JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+
+            if (answer != JOptionPane.YES_OPTION) {
+                queue.setFailureListener(saveFailureListener);
+                return false;
+            }
+        }
+
+        if (!DBMS.getInstance().shutdown()) {
+            System.err.println("cannot complete pending database changes");
+        }
+
+        return true;
     }
 
     /** Azione di creazione di un nuovo snippet. */
@@ -606,22 +726,53 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
                 return;
             }
 
-            String name = sourceList.getSelectedItem().getText();
-            Snippet snippet = controller.getSnippet(name);
-            String category = snippet.getCategory();
-
-            if (category == null) {
-                return;
-            }
+            final String name = sourceList.getSelectedItem().getText();
+            asyncController.getSnippetHeader(name, new AsyncController.Callback<SnippetHeader>() {
+                public void succeeded(final SnippetHeader snippet) {
+                    if (snippet == null || snippet.getCategory() == null) {
+                        return;
+                    }
 
-            // rimuovo lo snippet
-            if (controller.removeSnippet(name)) {
-                actionsAfterRemovingSnippet(snippet);
-            }
+                    // rimuovo lo snippet
+                    asyncController.removeSnippet(name, new AsyncController.Callback<Boolean>() {
+                        public void succeeded(Boolean success) {
+                            if (success) {
+                                actionsAfterRemovingSnippet(snippet);
+                            }
+                        }
+                    });
+                }
+            });
         }
     };
 
-    private void actionsAfterRemovingSnippet(Snippet snippet) {
+    /**
+     * Mostra nell'editor lo snippet selezionato nel SourceList e lo imposta
+     * come snippet di lavoro.
+     * 
+     * @param item L'elemento selezionato.
+     * @param snippet Lo snippet letto dal database.
+     */
+    private void snippetLoaded(SourceListItem item, Snippet snippet) {
+        state.setNameOfSelectedCategory(snippet.getCategory());
+        state.setNameOfSelectedSnippet(snippet.getName());
+
+        // lo snippet e' gia' completo: l'editor non legge altro dal database
+        mainPanel.setSnippet(snippet);
+        state.setPreviousSnippet(snippet);
+
+        // scrolla anche quando ci si sposta tra gli snippet usando le frecce
+        // direzionali
+        sourceList.scrollItemToVisible(item);
+
+        state.updateSnippetStatus(true, true, snippet.isLocked());
+        state.updateMenu(true, false);
+        state.updateWindowStatus(false);
+
+        checkAutoHideCommentPanel(snippet, false);
+    }
+
+    private void actionsAfterRemovingSnippet(SnippetHeader snippet) {
         state.snippetRemoved(snippet);
         state.updateSnippetStatus(false, false, false);
         state.updateWindowStatus(false);
@@ -643,32 +794,100 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     /** Effettua il salvataggio dello snippet corrente. */
     final ActionListener SAVE_SNIPPET_ACTION = new ActionListener() {
         public void actionPerformed(ActionEvent e) {
-            Snippet newSnippet = mainPanel.getSnippet();
-            Snippet oldSnippet = state.getPreviousSnippet();
+            final Snippet newSnippet = mainPanel.getSnippet();
+            final Snippet oldSnippet = state.getPreviousSnippet();
 
             if (newSnippet == null) {
                 System.out.println("new snippet is null");
                 return;
             }
 
+            // il salvataggio precedente non e' ancora terminato: lo snippet
+            // di lavoro non e' ancora aggiornato, quindi questo salvataggio
+            // viene ripetuto al suo termine
+            if (saving) {
+                saveRequested = true;
+                return;
+            }
+
+            // se il nome non cambia la modifica viene accodata e scritta nel
+            // database in seguito, insieme alle successive
+            if (oldSnippet != null && oldSnippet.getName().equals(newSnippet.getName())) {
+                saved(oldSnippet, newSnippet, controller.saveSnippet(oldSnippet, newSnippet));
+                return;
+            }
+
+            AsyncController.Callback<Boolean> callback = new AsyncController.Callback<Boolean>() {
+                public void succeeded(Boolean success) {
+                    finished(oldSnippet, newSnippet, success);
+                }
+
+                @Override
+                public void failed(Throwable cause) {
+                    super.failed(cause);
+                    finished(oldSnippet, newSnippet, false);
+                }
+            };
+
+            saving = true;
+
             // lo snippet precedente e' null: si tratta di un nuovo inserimento
             if (oldSnippet == null) {
-                if (controller.insertNewSnippet(newSnippet)) {
-                    insertSnippet(newSnippet);
-                } else {
-                    error(newSnippet.getName());
-                    return;
-                }
+                asyncController.insertNewSnippet(newSnippet, callback);
             } else {
-                // se le modifiche vengono effettuate correttamente aggiorno
-                // anche il SourceList
-                if (controller.updateSnippet(oldSnippet, newSnippet)) {
-                    updateSnippetInSourceList(oldSnippet, newSnippet);
-                } else {
-                    error(newSnippet.getName());
-                    return;
+                asyncController.updateSnippet(oldSnippet, newSnippet, callback);
+            }
+        }
+
+        /**
+         * Termina un salvataggio asincrono ed esegue quello richiesto nel
+         * frattempo, che dopo un errore viene ignorato.
+         * 
+         * @param oldSnippet Lo snippet prima delle modifiche, oppure
+         *        <code>null</code> per un nuovo snippet.
+         * @param newSnippet Lo snippet salvato.
+         * @param success L'esito del salvataggio.
+         */
+        private void finished(Snippet oldSnippet, Snippet newSnippet, boolean success) {
+            saving = false;
+            saved(oldSnippet, newSnippet, success);
+
+            if (saveRequested) {
+                saveRequested = false;
+                if (success) {
+                    actionPerformed(null);
                 }
             }
+        }
+
+        /**
+         * Aggiorna l'interfaccia al termine del salvataggio.
+         * 
+         * @param oldSnippet Lo snippet prima delle modifiche, oppure
+         *        <code>null</code> per un nuovo snippet.
+         * @param newSnippet Lo snippet salvato.
+         * @param success L'esito del salvataggio.
+         */
+        private void saved(Snippet oldSnippet, Snippet newSnippet, boolean success) {
+            if (!success) {
+                error(newSnippet.getName());
+                return;
+            }
+
+            // se le modifiche vengono effettuate correttamente aggiorno anche
+            // il SourceList
+            if (oldSnippet == null) {
+                insertSnippet(newSnippet);
+            } else {
+                updateSnippetInSourceList(oldSnippet, newSnippet);
+            }
+
+            // segnalo la modifica ai vari ascoltatori (tra cui la cache degli
+            // snippet)
+            if (oldSnippet != null && !oldSnippet.getName().equals(newSnippet.getName())) {
+                state.snippetRenamed(oldSnippet.getName(), newSnippet.getName());
+            }
+            state.snippetEdited(newSnippet);
 
             state.updateSnippetStatus(true, true, false);
             state.updateWindowStatus(false);
@@ -691,6 +910,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     final ActionListener RELOAD_SOURCE_LIST_ACTION = new ActionListener() {
         public void actionPerformed(ActionEvent e) {
             mainPanel.clear();
+            resetSourceList();
             reloadSourceList();
         }
     };
@@ -714,6 +934,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     final ActionListener CANCEL_BUTTON_SEARCH_ACTION = new ActionListener() {
         public void actionPerformed(ActionEvent e) {
             searchTextField.setText("");
+            cancelSearch();
             if (state.isSearchActive()) {
                 searchEnabledMenuItem.setEnabled(false);
                 state.updateSearch(false);
@@ -734,50 +955,148 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
 
     final ActionListener START_SEARCH_ACTION = new ActionListener() {
         public void actionPerformed(ActionEvent e) {
-            // interrompo se l'utente ha inserito una stringa vuota
-            String text = searchTextField.getText().trim();
-            if (text.length() == 0) {
-                if (e != null) {
-                    Toolkit.getDefaultToolkit().beep();
-                }
+            search(e != null);
+        }
+    };
 
-                // se la ricerca e' attiva la disattivo
-                if (state.isSearchActive()) {
-                    CANCEL_BUTTON_SEARCH_ACTION.actionPerformed(e);
-                }
+    /** Avviata dal timer quando l'utente smette di scrivere. */
+    final ActionListener INCREMENTAL_SEARCH_ACTION = new ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            search(false);
+        }
+    };
 
-                return;
+    /**
+     * Avvia la ricerca del testo inserito nel campo di ricerca. La ricerca
+     * viene eseguita in background: se nel frattempo ne viene avviata
+     * un'altra, i risultati di quella precedente vengono ignorati.
+     * 
+     * @param explicit <code>true</code> se la ricerca e' stata richiesta
+     *        esplicitamente dall'utente (in questo caso un testo vuoto o una
+     *        ricerca senza risultati vengono segnalati con un effetto sonoro).
+     */
+    private void search(boolean explicit) {
+        searchTimer.stop();
+
+        // interrompo se l'utente ha inserito una stringa vuota
+        String text = searchTextField.getText().trim();
+        if (text.length() == 0) {
+            if (explicit) {
+                Toolkit.getDefaultToolkit().beep();
             }
 
-            // la stringa inserita *dovrebbe* essere valida: separo le
-            // varie parole chiave e tolgo gli spazi prima e dopo il
-            // testo, poi effettuo la ricerca
-            String[] keywords = text.split(",");
-            for (int i = 0; i < keywords.length; i++) {
-                keywords[i] = keywords[i].trim();
+            // se la ricerca e' attiva la disattivo
+            if (state.isSearchActive()) {
+                CANCEL_BUTTON_SEARCH_ACTION.actionPerformed(null);
+            } else {
+                cancelSearch();
             }
 
-            // avvio la ricerca
-            state.startSearch();
+            return;
+        }
 
-            // risultato della ricerca
-            TreeMap<String, TreeSet<String>> data = DBMS.getInstance().search(keywords, controller.getValue());
-            controller.setData(data);
+        // la stringa inserita *dovrebbe* essere valida: separo le
+        // varie parole chiave e tolgo gli spazi prima e dopo il
+        // testo, poi effettuo la ricerca
+        String[] keywords = text.split(",");
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = keywords[i].trim();
+        }
+
+        // la ricerca precedente non serve piu': se non e' ancora partita
+        // non verra' eseguita, altrimenti viene interrotta (vedi
+        // DBMS#search(String[], int)) e il suo risultato scartato
+        if (currentSearch != null) {
+            currentSearch.cancel(true);
+        }
 
-            // la ricerca non ha dato risultati: emetto un effetto
-            // sonoro, fermo la ricerca e restituisco il controllo
-            if (data.size() == 0) {
+        currentSearch = new SearchWorker(keywords, SearchFilter.getInstance().countSearchTypeEnabled(), explicit);
+        searchExecutor.execute(currentSearch);
+    }
+
+    /** Annulla la ricerca in attesa o in corso. */
+    private void cancelSearch() {
+        searchTimer.stop();
+
+        if (currentSearch != null) {
+            currentSearch.cancel(true);
+            currentSearch = null;
+        }
+    }
+
+    /**
+     * Mostra i risultati di una ricerca.
+     * 
+     * @param hits I risultati della ricerca, dal piu' rilevante.
+     * @param explicit <code>true</code> se la ricerca e' stata richiesta
+     *        esplicitamente dall'utente.
+     */
+    private void showSearchResults(SearchHits hits, boolean explicit) {
+        if (hits == null) {
+            // errore durante la ricerca: la tratto come una ricerca vuota
+            hits = new SearchHits(new ArrayList<SearchHit>(), 0);
+        }
+
+        // avvio la ricerca
+        state.startSearch();
+        controller.setResults(hits);
+
+        // la ricerca non ha dato risultati: emetto un effetto
+        // sonoro, fermo la ricerca e restituisco il controllo
+        if (hits.size() == 0) {
+            if (explicit) {
                 Toolkit.getDefaultToolkit().beep();
-                state.stopSearch();
             }
+            state.stopSearch();
+        }
 
-            // attivo la possibilita' di disattivare la ricerca
-            searchEnabledMenuItem.setEnabled(true);
+        // attivo la possibilita' di disattivare la ricerca
+        searchEnabledMenuItem.setEnabled(true);
 
-            // la ricerca ha prodotto risultati: lo segnalo ai vari ascoltatori
-            state.updateSearch(true);
+        // la ricerca ha prodotto risultati: lo segnalo ai vari ascoltatori
+        state.updateSearch(true);
+    }
+
+    /**
+     * Esegue una ricerca in background e ne mostra i risultati, a meno che
+     * nel frattempo non ne sia stata avviata un'altra.
+     */
+    private class SearchWorker extends SwingWorker<SearchHits, Void> {
+        private final String[] keywords;
+        private final int fields;
+        private final boolean explicit;
+
+        public SearchWorker(String[] keywords, int fields, boolean explicit) {
+            this.keywords = keywords;
+            this.fields = fields;
+            this.explicit = explicit;
         }
-    };
+
+        @Override
+        protected SearchHits doInBackground() {
+            // durante la digitazione bastano i risultati migliori
+            return DBMS.getInstance().rank(keywords, fields, explicit ? 0 : SEARCH_AS_YOU_TYPE_LIMIT);
+        }
+
+        @Override
+        protected void done() {
+            // pubblico solo il risultato dell'ultima ricerca avviata
+            if (isCancelled() || currentSearch != this) {
+                return;
+            }
+
+            currentSearch = null;
+
+            try {
+                showSearchResults(get(), explicit);
+            } catch (InterruptedException ex) {
+                ex.printStackTrace();
+            } catch (ExecutionException ex) {
+                ex.printStackTrace();
+                showSearchResults(null, explicit);
+            }
+        }
+    }
 
     final ActionListener IMPORT_PACKAGE_ACTION = new ActionListener() {
         public void actionPerformed(ActionEvent e) {
@@ -880,7 +1199,8 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
 
             // faccio una copia del database nella nuova posizione: se va tutto
             // ok reimposto la connessione verso il nuovo database, cancello
-            // quello vecchio
+            // quello vecchio. Le modifiche in coda devono essere copiate.
+            controller.flush();
             if (DBMS.getInstance().copyDatabase(newLocation.getAbsolutePath())) {
                 if (DBMS.getInstance().resetConnection()) {
                     if (!FileManager.deleteDirectory(oldLocation)) {
@@ -904,17 +1224,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      * @param newSnippet Lo snippet appena inserito nel database.
      */
     private void insertSnippet(Snippet newSnippet) {
-        String category = newSnippet.getCategory();
-        String name = newSnippet.getName();
-        SourceListCategory sourceListCategory = getSourceListCategoryOf(category);
-
-        if (sourceListCategory == null) {
-            sourceListCategory = new SourceListCategory(category);
-            sourceList.getModel().addCategory(sourceListCategory);
-        }
-
-        SourceListItem sourceListItem = new SourceListItem(name);
-        sourceList.getModel().addItemToCategory(sourceListItem, sourceListCategory);
+        SourceListItem sourceListItem = sourceListUpdater.addItem(newSnippet.getName(), newSnippet.getCategory());
 
         state.setPreviousSnippet(newSnippet);
         sourceList.setSelectedItem(sourceListItem);
@@ -926,22 +1236,10 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      * 
      * @param snippet Lo snippet da rimuovere.
      */
-    private void removeSnippetFromSourceList(Snippet snippet) {
-        String category = snippet.getCategory();
-        String name = snippet.getName();
-
-        SourceListCategory sourceListCategory = getSourceListCategoryOf(category);
-        SourceListItem sourceListItem = getSourceListItemOf(name);
-
-        // se nella categoria e' rimasto un unico snippet cancello direttamente
+    private void removeSnippetFromSourceList(SnippetHeader snippet) {
+        // se nella categoria e' rimasto un unico snippet viene cancellata
         // tutta la categoria
-        if (sourceListCategory.getItemCount() == 1) {
-            sourceList.getModel().removeCategory(sourceListCategory);
-            return;
-        }
-
-        // altrimenti cancello solo lo snippet
-        sourceList.getModel().removeItemFromCategory(sourceListItem, sourceListCategory);
+        sourceListUpdater.removeItem(snippet.getName());
     }
 
     /**
@@ -952,46 +1250,9 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      * @param newSnippet Lo snippet privo di modifiche.
      */
     private void updateSnippetInSourceList(Snippet oldSnippet, Snippet newSnippet) {
-        String newCategory = newSnippet.getCategory();
-        String oldCategory = oldSnippet.getCategory();
-        String newName = newSnippet.getName();
-        String oldName = oldSnippet.getName();
-
-        // SourceListItem selectedItem = sourceList.getSelectedItem();
-        SourceListItem clickedItem = getSourceListItemOf(oldName);
-
-        // se la categoria non cambia passo a controllare i nomi
-        if (newCategory.equalsIgnoreCase(oldCategory)) {
-            // se i nomi sono diversi tengo quello nuovo, altrimenti non
-            // devo fare nulla
-            if (!newName.equals(oldName)) {
-                clickedItem.setText(newName);
-            }
-        } else {
-            // la vecchia categoria esiste per forza
-            SourceListCategory oldSourceListCategory = getSourceListCategoryOf(oldCategory);
-
-            // la nuova categoria potrebbe non esistere, eventualmente
-            // la creo al momento e la aggiungo al source list
-            SourceListCategory newSourceListCategory = getSourceListCategoryOf(newCategory);
-            if (newSourceListCategory == null) {
-                newSourceListCategory = new SourceListCategory(newCategory);
-                sourceList.getModel().addCategory(newSourceListCategory);
-            }
-
-            // se nella vecchia categoria c'e' un solo elemento (quello
-            // su cui sto lavorando) la cancello, altrimenti cancello
-            // solo l'item
-            if (oldSourceListCategory.getItemCount() == 1) {
-                sourceList.getModel().removeCategory(oldSourceListCategory);
-            } else {
-                sourceList.getModel().removeItemFromCategory(clickedItem, oldSourceListCategory);
-            }
-
-            // inserico l'item nella giusta posizione
-            sourceList.getModel().addItemToCategory(clickedItem, newSourceListCategory);
-            clickedItem.setText(newName);
-        }
+        // se la categoria non cambia viene aggiornato solo il nome, altrimenti
+        // l'item viene spostato in fondo alla nuova categoria
+        SourceListItem clickedItem = sourceListUpdater.moveItem(oldSnippet.getName(), newSnippet.getName(), newSnippet.getCategory());
 
         sourceList.setSelectedItem(clickedItem);
         sourceList.scrollItemToVisible(clickedItem);
@@ -1009,29 +1270,8 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      * @param destinationName Il nome di destinazione.
      */
     private void moveCategoryInSourceList(String sourceName, String destinationName) {
-        SourceListCategory oldCategory = getSourceListCategoryOf(sourceName);
-        if (sourceName.equalsIgnoreCase(destinationName)) {
-            oldCategory.setText(destinationName);
-            return;
-        }
-
-        SourceListCategory newCategory = getSourceListCategoryOf(destinationName);
         SourceListItem selectedItem = sourceList.getSelectedItem();
-
-        // newCategory e' null --> basta rinominare l'attuale
-        if (newCategory == null) {
-            oldCategory.setText(destinationName);
-        } else {
-            // newCategory non e' null -> devo spostare tutti gli item degli
-            // snippet nella nuova categoria
-            List<SourceListItem> items = oldCategory.getItems();
-            Iterator<SourceListItem> iterator = items.iterator();
-            while (iterator.hasNext()) {
-                SourceListItem item = iterator.next();
-                sourceList.getModel().addItemToCategory(item, newCategory);
-            }
-            sourceList.getModel().removeCategory(oldCategory);
-        }
+        sourceListUpdater.renameCategory(sourceName, destinationName);
 
         if (selectedItem != null) {
             sourceList.setSelectedItem(selectedItem);
@@ -1046,8 +1286,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      * @param name Il nome della categoria da rimuovere dal SourceList.
      */
     private void removeCategoryFromSourceList(String name) {
-        SourceListCategory sourceListCategory = getSourceListCategoryOf(name);
-        sourceList.getModel().removeCategory(sourceListCategory);
+        sourceListUpdater.removeCategory(name);
     }
 
     private abstract class MyAction extends AbstractAction {
@@ -1075,7 +1314,10 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             if (menuItemClicked.equals("Remove")) {
                 // ottengo lo snippet presente nel punto cui l'utente ha
                 // cliccato il tasto destro del mouse
-                Snippet snippet = controller.getSnippet(text);
+                SnippetHeader snippet = controller.getSnippetHeader(text);
+                if (snippet == null) {
+                    return;
+                }
 
                 // rimuove lo snippet dal database e chiama in cascata i vari
                 // listener interessati all'evento
@@ -1089,9 +1331,6 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             // se l'esecuzione arriva qui significa che l'utente ha cliccato su
             // una categoria esistente o sulla voce per crearne una nuova
 
-            // ottengo lo snippet presente nel punto cui l'utente ha cliccato il
-            // tasto destro del mouse
-            Snippet oldSnippet = controller.getSnippet(text);
 
             // destinazione dello snippet
             String category = new String();
@@ -1120,20 +1359,20 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
                 category = menuItemClicked;
             }
 
-            Snippet newSnippet;
-
-            try {
-                newSnippet = (Snippet) oldSnippet.clone();
-            } catch (CloneNotSupportedException ex) {
-                ex.printStackTrace();
-                return;
-            }
-
-            newSnippet.setCategory(category);
-
-            if (controller.updateSnippet(oldSnippet, newSnippet)) {
+            // lo snippet viene spostato senza leggerne ne' riscriverne il
+            // contenuto
+            if (controller.moveSnippet(text, category)) {
                 boolean locked = state.isSnippetLocked();
-                updateSnippetInSourceList(oldSnippet, newSnippet);
+                SourceListItem clickedItem = sourceListUpdater.moveItem(text, text, category);
+                sourceList.setSelectedItem(clickedItem);
+                sourceList.scrollItemToVisible(clickedItem);
+
+                // lo snippet di lavoro (se e' quello spostato) cambia categoria
+                Snippet previousSnippet = state.getPreviousSnippet();
+                if (previousSnippet != null && previousSnippet.getName().equals(text)) {
+                    previousSnippet.setCategory(category);
+                }
+
                 state.updateSnippetStatus(true, true, locked);
                 state.updateMenu(true, true);
             }
@@ -1239,7 +1478,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             dialog.setModal(true);
             dialog.setFilenameFilter(new FilenameFilter() {
                 public boolean accept(File dir, String name) {
-                    return name.endsWith(ApplicationConstants.JCC_EXTENSION);
+                    return name.endsWith(ApplicationConstants.JCC_EXTENSION) || name.endsWith(ApplicationConstants.JCC_BINARY_EXTENSION);
                 }
             });
             dialog.setMode(FileDialog.LOAD);
@@ -1264,12 +1503,12 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             chooser.setFileFilter(new FileFilter() {
                 @Override
                 public String getDescription() {
-                    return "jCodeCollector Package (.jccp)";
+                    return "jCodeCollector Package (.jccp, .jccb)";
                 }
 
                 @Override
                 public boolean accept(File f) {
-                    return f.getName().endsWith(ApplicationConstants.JCC_EXTENSION) | f.isDirectory();
+                    return f.getName().endsWith(ApplicationConstants.JCC_EXTENSION) | f.getName().endsWith(ApplicationConstants.JCC_BINARY_EXTENSION) | f.isDirectory();
                 }
             });
 
@@ -1280,33 +1519,146 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             path = chooser.getSelectedFile();
         }
 
-        // leggo il contenuto del file indicato dall'utente
-        ArrayList<Snippet> snippets = PackageManager.readPackage(path);
+        // dai pacchetti binari con indice l'utente puo' scegliere quali
+        // snippet importare
+        ImportPipeline pipeline = new ImportPipeline(path);
+        if (MappedPackage.hasIndex(path)) {
+            try {
+                MappedPackage mappedPackage = MappedPackage.open(path);
+                int[] indexes = new PackageImportDialog(MainFrame.this, mappedPackage, path.getName()).showDialog();
+                if (indexes == null || indexes.length == 0) {
+                    return;
+                }
 
-        if (snippets == null) {
-            JOptionPane.showMessageDialog(MainFrame.this, "The selected file is not valid.", "Error!", JOptionPane.ERROR_MESSAGE, null);
-            return;
+                pipeline = new ImportPipeline(mappedPackage, indexes);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(MainFrame.this, "The selected file is not valid.", "Error!", JOptionPane.ERROR_MESSAGE, null);
+                return;
+            }
         }
 
-        if (snippets.size() == 0) {
-            JOptionPane.showMessageDialog(MainFrame.this, "The selected file does not contain any snippets!", "Warning!", JOptionPane.INFORMATION_MESSAGE, null);
-            return;
+        // l'importazione avviene in background: durante l'importazione non
+        // se ne puo' avviare un'altra
+        importWorker = new ImportWorker(pipeline);
+        importFromPackageMenuItem.setEnabled(false);
+        statusLabel.setText("Importing snippets...");
+        importWorker.execute();
+    }
+
+    /** L'importazione in corso, <code>null</code> se non ce n'e' nessuna. */
+    private ImportWorker importWorker;
+
+    /**
+     * Esegue un {@link ImportPipeline} in background e ne mostra
+     * l'avanzamento nella barra di stato.
+     */
+    private class ImportWorker extends SwingWorker<Integer, int[]> {
+        private final ImportPipeline pipeline;
+
+        public ImportWorker(ImportPipeline pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        @Override
+        protected Integer doInBackground() throws InterruptedException {
+            pipeline.setProgressListener(new ImportPipeline.ProgressListener() {
+                public void progress(int read, int written) {
+                    publish(new int[] { read, written });
+                }
+            });
+
+            return pipeline.run();
         }
 
-        for (Snippet s : snippets) {
-            DBMS.getInstance().insertNewSnippet(s);
+        @Override
+        protected void process(List<int[]> chunks) {
+            int[] last = chunks.get(chunks.size() - 1);
+            statusLabel.setText("Importing snippets... " + last[1] + " / " + last[0]);
         }
 
-        // se va tutto bene ricarico il SourceList
-        reloadSourceList();
+        @Override
+        protected void done() {
+            importWorker = null;
 
-        // forzo l'aggiornamento del sub-menu con l'elenco delle categorie
-        state.updateMenu(true, true);
+            int count;
+            boolean failed = false;
+            try {
+                count = get();
+            } catch (InterruptedException ex) {
+                ex.printStackTrace();
+                count = -1;
+            } catch (ExecutionException ex) {
+                // uno stadio dell'importazione e' fallito
+                ex.printStackTrace();
+                count = -1;
+                failed = true;
+            }
+
+            InsertResult result = pipeline.getResult();
+
+            // ricarico il SourceList anche in caso di errore: gli snippet
+            // letti prima dell'errore sono stati importati
+            reloadSourceList();
+            state.countUpdate();
+
+            // forzo l'aggiornamento del sub-menu con l'elenco delle categorie
+            state.updateMenu(true, true);
+
+            if (failed) {
+                JOptionPane.showMessageDialog(MainFrame.this, "An error occurred while importing the snippets. See log file for details.", "Error!",
+                        JOptionPane.ERROR_MESSAGE, null);
+                return;
+            }
+
+            if (count < 0) {
+                JOptionPane.showMessageDialog(MainFrame.this, "The selected file is not valid.", "Error!", JOptionPane.ERROR_MESSAGE, null);
+                return;
+            }
+
+            if (count == 0) {
+                JOptionPane.showMessageDialog(MainFrame.this, "The selected file does not contain any snippets!", "Warning!", JOptionPane.INFORMATION_MESSAGE, null);
+                return;
+            }
+
+            if (result.getFailed() > 0) {
+                showImportFailures(result);
+            }
+        }
+    }
+
+    /** Il numero massimo di snippet scartati elencati dopo un'importazione. */
+    private static final int MAX_LISTED_FAILURES = 10;
+
+    /**
+     * Elenca gli snippet che non e' stato possibile importare.
+     * 
+     * @param result L'esito dell'importazione.
+     */
+    private void showImportFailures(InsertResult result) {
+        StringBuilder text = new StringBuilder("<html><b>" + result.getFailed() + " snippets were not imported.</b><br><br><font size=3>");
+        text.append("Usually a snippet with the same name already exists.<br><br>");
+
+        int listed = 0;
+        for (String name : result.getFailures().keySet()) {
+            if (listed++ == MAX_LISTED_FAILURES) {
+                text.append("...<br>");
+                break;
+            }
+
+            text.append(name.replace("&", "&amp;").replace("<", "&lt;")).append("<br>");
+        }
+
+        text.append("</font></html>");
+        JOptionPane.showMessageDialog(MainFrame.this, text.toString(), "Warning!", JOptionPane.WARNING_MESSAGE, null);
     }
 
     public void exportPackage(String name) {
         File path;
 
+        // il pacchetto viene letto dal database: scrivo le modifiche in coda
+        controller.flush();
+
         if (OS.isMacOSX()) {
             FileDialog dialog = new FileDialog(MainFrame.this);
             dialog.setTitle("Create A Package For " + (name == null ? "All Snippets" : name) + "...");
@@ -1336,7 +1688,19 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             chooser.setDialogTitle("Export Snippets Package...");
             chooser.setMultiSelectionEnabled(false);
             chooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
-            chooser.setFileFilter(new FileFilter() {
+            chooser.addChoosableFileFilter(new FileFilter() {
+                @Override
+                public String getDescription() {
+                    return "jCodeCollector Compressed Package (.jccb)";
+                }
+
+                @Override
+                public boolean accept(File f) {
+                    return f.getName().endsWith(ApplicationConstants.JCC_BINARY_EXTENSION) | f.isDirectory();
+                }
+            });
+
+            FileFilter xmlFilter = new FileFilter() {
                 @Override
                 public String getDescription() {
                     return "jCodeCollector Package (.jccp)";
@@ -1346,16 +1710,23 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
                 public boolean accept(File f) {
                     return f.getName().endsWith(ApplicationConstants.JCC_EXTENSION) | f.isDirectory();
                 }
-            });
+            };
+            chooser.addChoosableFileFilter(xmlFilter);
+            chooser.setFileFilter(xmlFilter);
 
             if (chooser.showSaveDialog(MainFrame.this) != JFileChooser.APPROVE_OPTION) {
                 return;
             }
 
             path = chooser.getSelectedFile();
+
+            // l'estensione indica il formato del pacchetto
+            if (chooser.getFileFilter() != xmlFilter && !path.getName().endsWith(ApplicationConstants.JCC_BINARY_EXTENSION)) {
+                path = new File(path.getAbsolutePath() + ApplicationConstants.JCC_BINARY_EXTENSION);
+            }
         }
 
-        if (!path.getAbsolutePath().endsWith(ApplicationConstants.JCC_EXTENSION)) {
+        if (!path.getName().endsWith(ApplicationConstants.JCC_EXTENSION) && !path.getName().endsWith(ApplicationConstants.JCC_BINARY_EXTENSION)) {
             path = new File(path.getAbsolutePath() + ApplicationConstants.JCC_EXTENSION);
         }
 
@@ -1366,95 +1737,23 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
 
     /** Svuota il {@link SourceList} */
     private void resetSourceList() {
-        SourceListCategory[] categories = sourceList.getModel().getCategories().toArray(new SourceListCategory[] {});
-        for (int i = 0; i < categories.length; i++) {
-            sourceList.getModel().removeCategory(categories[i]);
-        }
-    }
-
-    /** Legge il contenuto del database e popola il {@link SourceList}. */
-    public void reloadSourceList() {
-        // svuoto il SourceList
-        resetSourceList();
-
-        // ottengo l'elenco delle categorie
-        ArrayList<String> categories = controller.getCategories();
-
-        for (String category : categories) {
-            /* Il nome di una categoria e' case-insensitive: verifico se la
-             * categoria corrente e' gia' nel SourceList. In caso affermativo
-             * la riutilizzo, altrimenti ne creo una nuova. */
-            SourceListCategory categoryItem = getSourceListCategoryOf(category);
-            if (categoryItem == null) {
-                categoryItem = new SourceListCategory(category);
-                sourceList.getModel().addCategory(categoryItem);
-            }
-
-            // ottengo l'elenco degli snippet e lo ordino alfabeticamente
-            ArrayList<String> snippets = controller.getSnippetsName(category);
-            Collections.sort(snippets);
-
-            for (String snippet : snippets) {
-                SourceListItem snippetItem = new SourceListItem(snippet);
-                sourceList.getModel().addItemToCategory(snippetItem, categoryItem);
-            }
-        }
-
-        state.updateWindowStatus(false);
+        sourceListUpdater.clear();
     }
 
     /**
-     * Restituisce il {@link SourceListCategory} relativo alla categoria
-     * indicata.
-     * 
-     * @param category La categoria di cui si vuole ottenere il
-     *        {@link SourceListCategory}.
-     * @return il {@link SourceListCategory} della categoria indicata (se
-     *         esiste), <code>null</code> altrimenti
+     * Legge il contenuto del database e aggiorna il {@link SourceList}. Gli
+     * elementi gia' presenti al posto giusto non vengono ricreati.
      */
-    private SourceListCategory getSourceListCategoryOf(String category) {
-        if (category == null) {
-            throw new IllegalArgumentException("\"category\" must not be null");
-        }
-
-        List<SourceListCategory> categories = sourceList.getModel().getCategories();
-        Iterator<SourceListCategory> iterator = categories.iterator();
-        while (iterator.hasNext()) {
-            SourceListCategory sourceListCategory = iterator.next();
-            if (category.equalsIgnoreCase(sourceListCategory.getText())) {
-                return sourceListCategory;
-            }
-        }
-
-        return null;
-    }
-
-    /**
-     * Permette di ottenere il <code>SourceListItem</code> relativo allo snippet
-     * indicato.
-     * 
-     * @param snippet Lo snippet della categoria di cui si vuole ottenere il
-     *        <code>SourceListItem</code>.
-     * @return il <code>SourceListItem</code> dello snippet indicato (se
-     *         esiste), <code>null</code> altrimenti
-     */
-    private SourceListItem getSourceListItemOf(String snippet) {
-        List<SourceListCategory> categories = sourceList.getModel().getCategories();
-        Iterator<SourceListCategory> iterator = categories.iterator();
-
-        while (iterator.hasNext()) {
-            SourceListCategory sourceListCategory = iterator.next();
-            List<SourceListItem> items = sourceListCategory.getItems();
-            Iterator<SourceListItem> innerIterator = items.iterator();
-            while (innerIterator.hasNext()) {
-                SourceListItem sourceListItem = innerIterator.next();
-                if (sourceListItem.getText().equals(snippet)) {
-                    return sourceListItem;
-                }
-            }
+    public void reloadSourceList() {
+        // categorie e snippet arrivano gia' ordinati: alfabeticamente oppure,
+        // per i risultati di una ricerca, per rilevanza
+        LinkedHashMap<String, ArrayList<String>> catalog = controller.getCatalog();
+        if (catalog == null) {
+            return;
         }
 
-        return null;
+        sourceListUpdater.update(catalog);
+        state.updateWindowStatus(false);
     }
 
     public AboutWindow getAboutWindow() {
@@ -1462,10 +1761,13 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     }
 
     public void countUpdate(int categories, int snippets) {
+        // durante la digitazione vengono mostrati solo i risultati migliori
+        int matches = controller.isSearchActive() ? controller.countMatches() : snippets;
+
         String temp = categories + " categor";
         temp += (categories == 1) ? "y" : "ies";
-        temp += " / " + snippets + " snippet";
-        temp += (snippets != 1) ? "s" : "";
+        temp += " / " + (matches > snippets ? "top " + snippets + " of " + matches : String.valueOf(snippets)) + " snippet";
+        temp += (matches != 1) ? "s" : "";
 
         statusLabel.setText(temp);
     }
@@ -1491,7 +1793,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      * 
      * @param snippet Lo snippet rimosso.
      */
-    public void snippetRemoved(Snippet snippet) {
+    public void snippetRemoved(SnippetHeader snippet) {
         removeSnippetFromSourceList(snippet);
     }
 
@@ -1582,17 +1884,10 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
      * @param text Il testo contenuto nel {@link SourceListItem} da selezionare.
      */
     private void manuallySelectItem(String text) {
-        Iterator<SourceListCategory> iterator = sourceList.getModel().getCategories().iterator();
-        while (iterator.hasNext()) {
-            Iterator<SourceListItem> innerIterator = iterator.next().getItems().iterator();
-            while (innerIterator.hasNext()) {
-                SourceListItem item;
-                if ((item = innerIterator.next()).getText().equals(text)) {
-                    sourceList.setSelectedItem(item);
-                    sourceList.scrollItemToVisible(item);
-                    return;
-                }
-            }
+        SourceListItem item = text == null ? null : sourceListUpdater.getItem(text);
+        if (item != null) {
+            sourceList.setSelectedItem(item);
+            sourceList.scrollItemToVisible(item);
         }
     }
 
@@ -1625,6 +1920,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
     private JCheckBoxMenuItem codeMenuItem;
     private JCheckBoxMenuItem commentsMenuItem;
     private JCheckBoxMenuItem caseMenuItem;
+    private JCheckBoxMenuItem searchAsYouTypeMenuItem;
     private JMenuItem searchEnabledMenuItem;
 
     // snippet menu
@@ -1695,8 +1991,9 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             quitApplication.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, InputEvent.CTRL_DOWN_MASK));
             quitApplication.addActionListener(new ActionListener() {
                 public void actionPerformed(ActionEvent e) {
-                    prepareAndSaveSettings();
-                    System.exit(0);
+                    if (prepareAndSaveSettings()) {
+                        System.exit(0);
+                    }
                 }
             });
 
@@ -1750,7 +2047,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
         autoHideCommentPanelMenuItem.setSelected(ApplicationSettings.getInstance().isAutoHideCommentEnabled());
         autoHideCommentPanelMenuItem.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent e) {
-                checkAutoHideCommentPanel(DBMS.getInstance().getSnippet(state.getNameOfSelectedSnippet()), true);
+                checkAutoHideCommentPanel(controller.getSnippet(state.getNameOfSelectedSnippet()), true);
             }
         });
 
@@ -1821,6 +2118,13 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
             }
         });
 
+        searchAsYouTypeMenuItem = new JCheckBoxMenuItem("Search As You Type", SearchFilter.getInstance().isSearchAsYouTypeEnabled());
+        searchAsYouTypeMenuItem.addItemListener(new ItemListener() {
+            public void itemStateChanged(ItemEvent e) {
+                SearchFilter.getInstance().setSearchAsYouTypeEnabled(searchAsYouTypeMenuItem.isSelected());
+            }
+        });
+
         searchEnabledMenuItem = new JMenuItem("Clear Search");
         searchEnabledMenuItem.setEnabled(false);
         searchEnabledMenuItem.addActionListener(CANCEL_BUTTON_SEARCH_ACTION);
@@ -1835,6 +2139,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
         }
         searchMenu.addSeparator();
         searchMenu.add(caseMenuItem);
+        searchMenu.add(searchAsYouTypeMenuItem);
         // end search menu
 
         // snippet menu
@@ -1915,7 +2220,7 @@ public class MainFrame extends JFrame implements CountListener, SnippetListener,
         // file menu
         reloadSourceListMenuItem.setEnabled(enabled);
 
-        importFromPackageMenuItem.setEnabled(enabled);
+        importFromPackageMenuItem.setEnabled(enabled && importWorker == null);
         exportAllMenuItem.setEnabled(!state.isDatabaseEmpty() && enabled);
 
         // aggiorno il sub menu con le categorie di destinazione
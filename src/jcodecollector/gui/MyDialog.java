@@ -41,6 +41,7 @@ import javax.swing.JComboBox;
 import javax.swing.JComponent;
 import javax.swing.JDialog;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JSplitPane;
@@ -54,7 +55,11 @@ import javax.swing.text.JTextComponent;
 
 import jcodecollector.State;
 import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
+import jcodecollector.data.AsyncController;
+import jcodecollector.data.Controller;
 import jcodecollector.data.DBMS;
+import jcodecollector.data.settings.ApplicationSettings;
 import jcodecollector.document.EditorValidator;
 import jcodecollector.document.LimitedPlainDocument;
 import jcodecollector.document.LimitedSyntaxDocument;
@@ -195,10 +200,12 @@ public class MyDialog extends JDialog implements SnippetListener, CategoryListen
             int caretPosition = editor.getCaretPosition();
 
             // aggiorno il Document dell'editor
+            // il nuovo Document deve poter contenere tutto il codice attuale
+            int limit = getCodeLengthLimit(code.length());
             if (syntax != null) {
-                editor.setDocument(new LimitedSyntaxDocument(syntax, ApplicationConstants.CODE_LENGTH));
+                editor.setDocument(new LimitedSyntaxDocument(syntax, limit));
             } else {
-                editor.setDocument(new LimitedSyntaxDocument(ApplicationConstants.CODE_LENGTH));
+                editor.setDocument(new LimitedSyntaxDocument(limit));
             }
 
             // ripristino il testo e la posizione del cursore
@@ -267,7 +274,7 @@ public class MyDialog extends JDialog implements SnippetListener, CategoryListen
         syntaxBox.setEditable(false);
 
         editor = new RSyntaxTextArea();
-        editor.setDocument(new LimitedSyntaxDocument(ApplicationConstants.CODE_LENGTH));
+        editor.setDocument(new LimitedSyntaxDocument(ApplicationSettings.getInstance().getCodeLengthLimit()));
         editor.setFadeCurrentLineHighlight(true);
         editor.setMarginLineEnabled(true);
         editor.setMarginLinePosition(80);
@@ -463,14 +470,22 @@ public class MyDialog extends JDialog implements SnippetListener, CategoryListen
     }
 
     /**
-     * Mostra nell'editor lo snippet indicato. Lo snippet non deve essere
-     * <code>null</code>.
+     * Mostra nell'editor lo snippet indicato. Se viene passata solo
+     * l'intestazione dello snippet, il codice e il commento vengono letti dal
+     * database in questo momento.
      * 
-     * @param snippet Lo snippet da mostrare.
+     * @param header Lo snippet (o la sua intestazione) da mostrare.
+     * @return lo snippet completo mostrato nell'editor, oppure
+     *         <code>null</code> se lo snippet non esiste
      */
-    public void setSnippet(Snippet snippet) {
+    public Snippet setSnippet(SnippetHeader header) {
+        if (header == null) {
+            return null;
+        }
+
+        Snippet snippet = Controller.getInstance().loadSnippet(header);
         if (snippet == null) {
-            return;
+            return null;
         }
 
         /* Prima di iniziare ad inserire i dati dello snippet nell'editor fermo
@@ -508,6 +523,15 @@ public class MyDialog extends JDialog implements SnippetListener, CategoryListen
 
         s = snippet.getCode().trim();
         if (s != null && !s.equals(editor.getText().trim())) {
+            /* uno snippet importato puo' superare il limite dell'editor: il
+             * limite viene alzato per non troncare il codice, che altrimenti
+             * verrebbe salvato troncato. */
+            ((LimitedSyntaxDocument) editor.getDocument()).setMaxSize(getCodeLengthLimit(s.length()));
+            if (s.length() > ApplicationSettings.getInstance().getCodeLengthLimit()) {
+                JOptionPane.showMessageDialog(mainframe, "<html><b>The code of \"" + snippet.getName() + "\" is " + s.length() + " characters long.</b><br><br><font size=3>"
+                        + "It exceeds the editor limit of " + ApplicationSettings.getInstance().getCodeLengthLimit() + " characters, "
+                        + "which has been raised for this snippet.</font></html>", "Warning!", JOptionPane.WARNING_MESSAGE);
+            }
             editor.setText(s);
             editor.setCaretPosition(0);
         }
@@ -527,6 +551,19 @@ public class MyDialog extends JDialog implements SnippetListener, CategoryListen
         lockButton.setSelected(snippet.isLocked());
         lockButton.setEnabled(true);
         lock(snippet.isLocked());
+
+        return snippet;
+    }
+
+    /**
+     * Restituisce il limite da usare per il documento dell'editor: quello
+     * delle impostazioni, oppure la lunghezza del codice indicata se maggiore.
+     * 
+     * @param length La lunghezza del codice da mostrare nell'editor.
+     * @return il limite del documento dell'editor
+     */
+    private int getCodeLengthLimit(int length) {
+        return Math.max(ApplicationSettings.getInstance().getCodeLengthLimit(), length);
     }
 
     /** Svuota l'editor e pulisce tutti i campi. */
@@ -604,8 +641,8 @@ public class MyDialog extends JDialog implements SnippetListener, CategoryListen
         }
     }
 
-    /** @see jcodecollector.listener.SnippetListener#snippetRemoved(Snippet) */
-    public void snippetRemoved(Snippet snippet) {
+    /** @see jcodecollector.listener.SnippetListener#snippetRemoved(SnippetHeader) */
+    public void snippetRemoved(SnippetHeader snippet) {
         if (nameTextField.getText().trim().equals(snippet.getName())) {
             clear();
         }
@@ -699,9 +736,8 @@ public class MyDialog extends JDialog implements SnippetListener, CategoryListen
         // lock/unlock the snippet
         lock(lockButton.isSelected());
 
-        if (DBMS.getInstance().lockSnippet(nameTextField.getText().trim(), lockButton.isSelected())) {
-            // TODO cosa si fa qui? boh
-        }
+        // la modifica viene accodata alle altre: non serve attenderne l'esito
+        AsyncController.getInstance().lockSnippet(nameTextField.getText().trim(), lockButton.isSelected(), null);
     }
 
     public void syntaxRenamed(String newName, String category) {
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.ListSelectionModel;
+import javax.swing.border.EmptyBorder;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.io.MappedPackage;
+
+/**
+ * Elenca gli snippet di un {@link MappedPackage} e permette di scegliere quali
+ * importare. Il codice di uno snippet viene letto dal pacchetto solo quando lo
+ * snippet viene selezionato per l'anteprima.
+ * 
+ * @author Alessandro Cocco
+ */
+public class PackageImportDialog extends JDialog {
+
+    private static final long serialVersionUID = -3418893375532472091L;
+
+    /** Il pacchetto da cui importare gli snippet. */
+    private MappedPackage mappedPackage;
+
+    /** Gli snippet scelti per l'importazione. */
+    private boolean[] selected;
+
+    /** <code>true</code> se l'utente ha confermato l'importazione. */
+    private boolean confirmed = false;
+
+    private PackageTableModel model;
+    private JTable table;
+    private JTextArea preview;
+    private JLabel countLabel;
+
+    /**
+     * Crea la finestra per il pacchetto indicato.
+     * 
+     * @param owner La finestra principale.
+     * @param mappedPackage Il pacchetto da cui importare gli snippet.
+     * @param title Il nome del pacchetto.
+     */
+    public PackageImportDialog(JFrame owner, MappedPackage mappedPackage, String title) {
+        super(owner, "Import Snippets From " + title, true);
+        this.mappedPackage = mappedPackage;
+        this.selected = new boolean[mappedPackage.size()];
+        Arrays.fill(selected, true);
+
+        model = new PackageTableModel();
+        table = new JTable(model);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(0).setMaxWidth(60);
+        table.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+            public void valueChanged(ListSelectionEvent e) {
+                if (!e.getValueIsAdjusting()) {
+                    updatePreview();
+                }
+            }
+        });
+
+        preview = new JTextArea();
+        preview.setEditable(false);
+        preview.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(table), new JScrollPane(preview));
+        split.setResizeWeight(0.6);
+
+        countLabel = new JLabel();
+        updateCount();
+
+        JButton allButton = new JButton("Select All");
+        allButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setAllSelected(true);
+            }
+        });
+
+        JButton noneButton = new JButton("Select None");
+        noneButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setAllSelected(false);
+            }
+        });
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setVisible(false);
+            }
+        });
+
+        JButton importButton = new JButton("Import");
+        importButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                confirmed = true;
+                setVisible(false);
+            }
+        });
+
+        JPanel leftPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        leftPanel.add(allButton);
+        leftPanel.add(noneButton);
+        leftPanel.add(countLabel);
+
+        JPanel rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        rightPanel.add(cancelButton);
+        rightPanel.add(importButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(leftPanel, BorderLayout.WEST);
+        southPanel.add(rightPanel, BorderLayout.EAST);
+
+        JPanel mainPanel = new JPanel(new BorderLayout(0, 5));
+        mainPanel.setBorder(new EmptyBorder(10, 10, 5, 10));
+        mainPanel.add(split, BorderLayout.CENTER);
+        mainPanel.add(southPanel, BorderLayout.SOUTH);
+
+        setContentPane(mainPanel);
+        getRootPane().setDefaultButton(importButton);
+        setSize(new Dimension(600, 500));
+        setLocationRelativeTo(owner);
+    }
+
+    /**
+     * Mostra la finestra e attende la scelta dell'utente.
+     * 
+     * @return le posizioni nel pacchetto degli snippet da importare, oppure
+     *         <code>null</code> se l'utente annulla l'importazione
+     */
+    public int[] showDialog() {
+        setVisible(true);
+
+        if (!confirmed) {
+            return null;
+        }
+
+        int count = 0;
+        for (boolean b : selected) {
+            count += b ? 1 : 0;
+        }
+
+        int[] indexes = new int[count];
+        for (int i = 0, j = 0; i < selected.length; i++) {
+            if (selected[i]) {
+                indexes[j++] = i;
+            }
+        }
+
+        return indexes;
+    }
+
+    private void setAllSelected(boolean value) {
+        Arrays.fill(selected, value);
+        model.fireTableDataChanged();
+        updateCount();
+    }
+
+    private void updateCount() {
+        int count = 0;
+        for (boolean b : selected) {
+            count += b ? 1 : 0;
+        }
+
+        countLabel.setText(count + " of " + selected.length + " selected");
+    }
+
+    /** Mostra il codice dello snippet selezionato, leggendolo dal pacchetto. */
+    private void updatePreview() {
+        int row = table.getSelectedRow();
+        if (row < 0) {
+            preview.setText(null);
+            return;
+        }
+
+        try {
+            Snippet snippet = mappedPackage.getSnippet(row);
+            preview.setText(snippet.getCode());
+            preview.setCaretPosition(0);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            preview.setText("Cannot read this snippet: the package is corrupted.");
+        }
+    }
+
+    /** Il modello della tabella: una riga per snippet del pacchetto. */
+    private class PackageTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 2874016713532036481L;
+
+        private final String[] columns = { "Import", "Name", "Category" };
+
+        public int getRowCount() {
+            return mappedPackage.size();
+        }
+
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? Boolean.class : String.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return column == 0;
+        }
+
+        public Object getValueAt(int row, int column) {
+            switch (column) {
+            case 0:
+                return selected[row];
+            case 1:
+                return mappedPackage.getName(row);
+            default:
+                return mappedPackage.getCategory(row);
+            }
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            selected[row] = (Boolean) value;
+            fireTableCellUpdated(row, column);
+            updateCount();
+        }
+    }
+
+}
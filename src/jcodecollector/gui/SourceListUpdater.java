@@ -0,0 +1,359 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.gui;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.explodingpixels.macwidgets.SourceListCategory;
+import com.explodingpixels.macwidgets.SourceListItem;
+import com.explodingpixels.macwidgets.SourceListModel;
+
+/**
+ * Gestisce il contenuto del {@link SourceListModel} della finestra principale.
+ * Categorie e snippet sono indicizzati per nome (le categorie senza
+ * distinzione tra maiuscole e minuscole), quindi la ricerca di un elemento non
+ * richiede di scorrere tutto il modello.
+ * <p>
+ * Il metodo {@link #update(Map)} confronta il contenuto attuale con l'elenco
+ * di categorie e snippet indicato e applica al modello solo le differenze:
+ * gli elementi gia' presenti nella posizione giusta non vengono toccati.
+ *
+ * @author Alessandro Cocco
+ */
+public class SourceListUpdater {
+
+    /** Il modello gestito. */
+    private SourceListModel model;
+
+    /** Le categorie del modello, indicizzate per nome in minuscolo. */
+    private HashMap<String, SourceListCategory> categories;
+
+    /** Gli snippet del modello, indicizzati per nome. */
+    private HashMap<String, SourceListItem> items;
+
+    /** La categoria di ogni snippet, indicizzata per nome dello snippet. */
+    private HashMap<String, SourceListCategory> parents;
+
+    /**
+     * Crea un gestore per il modello indicato, che deve essere vuoto.
+     *
+     * @param model Il modello da gestire.
+     */
+    public SourceListUpdater(SourceListModel model) {
+        this.model = model;
+        this.categories = new HashMap<String, SourceListCategory>();
+        this.items = new HashMap<String, SourceListItem>();
+        this.parents = new HashMap<String, SourceListCategory>();
+    }
+
+    /**
+     * Restituisce il {@link SourceListCategory} relativo alla categoria
+     * indicata.
+     *
+     * @param category Il nome della categoria (case-insensitive).
+     * @return il {@link SourceListCategory} della categoria indicata (se
+     *         esiste), <code>null</code> altrimenti
+     */
+    public SourceListCategory getCategory(String category) {
+        if (category == null) {
+            throw new IllegalArgumentException("\"category\" must not be null");
+        }
+
+        return categories.get(category.toLowerCase());
+    }
+
+    /**
+     * Restituisce il {@link SourceListItem} relativo allo snippet indicato.
+     *
+     * @param snippet Il nome dello snippet.
+     * @return il {@link SourceListItem} dello snippet indicato (se esiste),
+     *         <code>null</code> altrimenti
+     */
+    public SourceListItem getItem(String snippet) {
+        return items.get(snippet);
+    }
+
+    /**
+     * Aggiunge uno snippet in fondo alla categoria indicata, creando la
+     * categoria se non esiste.
+     *
+     * @param name Il nome dello snippet.
+     * @param category Il nome della categoria.
+     * @return il {@link SourceListItem} dello snippet
+     */
+    public SourceListItem addItem(String name, String category) {
+        SourceListCategory sourceListCategory = getCategory(category);
+        if (sourceListCategory == null) {
+            sourceListCategory = addCategory(category, model.getCategories().size());
+        }
+
+        SourceListItem sourceListItem = new SourceListItem(name);
+        model.addItemToCategory(sourceListItem, sourceListCategory);
+        items.put(name, sourceListItem);
+        parents.put(name, sourceListCategory);
+
+        return sourceListItem;
+    }
+
+    /**
+     * Rimuove lo snippet indicato. Se la sua categoria rimane vuota viene
+     * rimossa anch'essa.
+     *
+     * @param name Il nome dello snippet.
+     */
+    public void removeItem(String name) {
+        SourceListItem sourceListItem = items.get(name);
+        if (sourceListItem == null) {
+            return;
+        }
+
+        SourceListCategory sourceListCategory = parents.get(name);
+
+        // se nella categoria e' rimasto un unico snippet cancello direttamente
+        // tutta la categoria
+        if (sourceListCategory.getItemCount() == 1) {
+            removeCategory(sourceListCategory.getText());
+            return;
+        }
+
+        model.removeItemFromCategory(sourceListItem, sourceListCategory);
+        items.remove(name);
+        parents.remove(name);
+    }
+
+    /**
+     * Rinomina uno snippet ed eventualmente lo sposta in fondo a un'altra
+     * categoria, creandola se non esiste. Se la vecchia categoria rimane vuota
+     * viene rimossa.
+     *
+     * @param oldName Il nome attuale dello snippet.
+     * @param newName Il nuovo nome dello snippet.
+     * @param category La categoria di destinazione.
+     * @return il {@link SourceListItem} dello snippet, oppure
+     *         <code>null</code> se lo snippet non esiste
+     */
+    public SourceListItem moveItem(String oldName, String newName, String category) {
+        SourceListItem sourceListItem = items.remove(oldName);
+        if (sourceListItem == null) {
+            return null;
+        }
+
+        SourceListCategory oldCategory = parents.remove(oldName);
+        SourceListCategory newCategory = getCategory(category);
+
+        if (oldCategory != newCategory) {
+            // la nuova categoria potrebbe non esistere, eventualmente
+            // la creo al momento e la aggiungo al source list
+            if (newCategory == null) {
+                newCategory = addCategory(category, model.getCategories().size());
+            }
+
+            // se nella vecchia categoria c'e' un solo elemento (quello su cui
+            // sto lavorando) la cancello, altrimenti cancello solo l'item
+            if (oldCategory.getItemCount() == 1) {
+                model.removeCategory(oldCategory);
+                categories.remove(oldCategory.getText().toLowerCase());
+            } else {
+                model.removeItemFromCategory(sourceListItem, oldCategory);
+            }
+
+            model.addItemToCategory(sourceListItem, newCategory);
+        }
+
+        if (!newName.equals(sourceListItem.getText())) {
+            sourceListItem.setText(newName);
+        }
+
+        items.put(newName, sourceListItem);
+        parents.put(newName, newCategory);
+
+        return sourceListItem;
+    }
+
+    /**
+     * Rinomina una categoria. Se la categoria di destinazione esiste gia' vi
+     * vengono spostati tutti gli snippet della vecchia, che viene rimossa.
+     *
+     * @param oldName Il nome attuale della categoria.
+     * @param newName Il nuovo nome della categoria.
+     */
+    public void renameCategory(String oldName, String newName) {
+        SourceListCategory oldCategory = getCategory(oldName);
+        if (oldCategory == null) {
+            return;
+        }
+
+        SourceListCategory newCategory = getCategory(newName);
+
+        // la destinazione non esiste (o e' la stessa categoria): basta
+        // rinominare l'attuale
+        if (newCategory == null || newCategory == oldCategory) {
+            categories.remove(oldName.toLowerCase());
+            oldCategory.setText(newName);
+            categories.put(newName.toLowerCase(), oldCategory);
+            return;
+        }
+
+        List<SourceListItem> oldItems = new ArrayList<SourceListItem>(oldCategory.getItems());
+        for (SourceListItem item : oldItems) {
+            model.addItemToCategory(item, newCategory);
+            parents.put(item.getText(), newCategory);
+        }
+
+        model.removeCategory(oldCategory);
+        categories.remove(oldName.toLowerCase());
+    }
+
+    /**
+     * Rimuove la categoria indicata e tutti i suoi snippet.
+     *
+     * @param name Il nome della categoria.
+     */
+    public void removeCategory(String name) {
+        SourceListCategory sourceListCategory = categories.remove(name.toLowerCase());
+        if (sourceListCategory == null) {
+            return;
+        }
+
+        for (SourceListItem item : sourceListCategory.getItems()) {
+            items.remove(item.getText());
+            parents.remove(item.getText());
+        }
+
+        model.removeCategory(sourceListCategory);
+    }
+
+    /** Svuota il modello. */
+    public void clear() {
+        SourceListCategory[] array = model.getCategories().toArray(new SourceListCategory[] {});
+        for (int i = 0; i < array.length; i++) {
+            model.removeCategory(array[i]);
+        }
+
+        categories.clear();
+        items.clear();
+        parents.clear();
+    }
+
+    /**
+     * Aggiorna il modello in modo che contenga esattamente le categorie e gli
+     * snippet indicati, nell'ordine indicato. Prima vengono rimossi gli
+     * elementi che non compaiono piu' nell'elenco, poi vengono inseriti
+     * quelli nuovi e riposizionati quelli fuori posto.
+     *
+     * @param catalog I nomi degli snippet, raggruppati per categoria.
+     */
+    public void update(Map<String, ? extends List<String>> catalog) {
+        /* Il nome di una categoria e' case-insensitive: unisco le categorie
+         * che differiscono solo per maiuscole e minuscole. */
+        LinkedHashMap<String, String> names = new LinkedHashMap<String, String>();
+        HashMap<String, ArrayList<String>> snippets = new HashMap<String, ArrayList<String>>();
+        for (Map.Entry<String, ? extends List<String>> entry : catalog.entrySet()) {
+            String key = entry.getKey().toLowerCase();
+            if (!names.containsKey(key)) {
+                names.put(key, entry.getKey());
+                snippets.put(key, new ArrayList<String>());
+            }
+            snippets.get(key).addAll(entry.getValue());
+        }
+
+        // rimuovo le categorie e gli snippet che non ci sono piu'
+        SourceListCategory[] array = model.getCategories().toArray(new SourceListCategory[] {});
+        for (int i = 0; i < array.length; i++) {
+            String key = array[i].getText().toLowerCase();
+            if (!names.containsKey(key)) {
+                removeCategory(key);
+                continue;
+            }
+
+            HashSet<String> wanted = new HashSet<String>(snippets.get(key));
+            SourceListItem[] current = array[i].getItems().toArray(new SourceListItem[] {});
+            for (int j = 0; j < current.length; j++) {
+                String name = current[j].getText();
+                if (!wanted.contains(name)) {
+                    model.removeItemFromCategory(current[j], array[i]);
+                    items.remove(name);
+                    parents.remove(name);
+                }
+            }
+        }
+
+        // inserisco e riposiziono categorie e snippet
+        int i = 0;
+        for (Map.Entry<String, String> entry : names.entrySet()) {
+            String key = entry.getKey();
+            SourceListCategory sourceListCategory = categories.get(key);
+            List<SourceListCategory> current = model.getCategories();
+
+            if (sourceListCategory == null) {
+                sourceListCategory = addCategory(entry.getValue(), i);
+            } else if (current.get(i) != sourceListCategory) {
+                model.removeCategory(sourceListCategory);
+                model.addCategory(sourceListCategory, i);
+            }
+
+            if (!sourceListCategory.getText().equals(entry.getValue())) {
+                sourceListCategory.setText(entry.getValue());
+            }
+
+            updateCategory(sourceListCategory, snippets.get(key));
+            i++;
+        }
+    }
+
+    /**
+     * Aggiorna gli snippet di una categoria. La categoria contiene gia' solo
+     * snippet presenti nell'elenco indicato.
+     */
+    private void updateCategory(SourceListCategory sourceListCategory, List<String> names) {
+        int j = 0;
+        for (String name : names) {
+            SourceListItem sourceListItem = items.get(name);
+            List<SourceListItem> current = sourceListCategory.getItems();
+
+            if (sourceListItem != null && parents.get(name) != sourceListCategory) {
+                // lo snippet e' rimasto in un'altra categoria (due nomi
+                // ripetuti nell'elenco): lo sposto
+                model.removeItemFromCategory(sourceListItem, parents.get(name));
+                model.addItemToCategory(sourceListItem, sourceListCategory, j);
+            } else if (sourceListItem == null) {
+                sourceListItem = new SourceListItem(name);
+                model.addItemToCategory(sourceListItem, sourceListCategory, j);
+                items.put(name, sourceListItem);
+            } else if (j >= current.size() || current.get(j) != sourceListItem) {
+                model.removeItemFromCategory(sourceListItem, sourceListCategory);
+                model.addItemToCategory(sourceListItem, sourceListCategory, j);
+            }
+
+            parents.put(name, sourceListCategory);
+            j++;
+        }
+    }
+
+    private SourceListCategory addCategory(String name, int index) {
+        SourceListCategory sourceListCategory = new SourceListCategory(name);
+        model.addCategory(sourceListCategory, index);
+        categories.put(name.toLowerCase(), sourceListCategory);
+
+        return sourceListCategory;
+    }
+
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.data.DBMS;
+import jcodecollector.util.ApplicationConstants;
+import jcodecollector.util.GeneralInfo;
+
+/**
+ * Il formato binario dei pacchetti (estensione
+ * {@link jcodecollector.util.ApplicationConstants#JCC_BINARY_EXTENSION}), piu'
+ * compatto e veloce da leggere dell'XML.
+ * <p>
+ * Il file inizia con un'intestazione non compressa: il numero magico
+ * {@link #MAGIC} (i caratteri "JCCB"), la versione del formato, i flag, il
+ * numero di snippet e la versione di jCodeCollector che ha scritto il file.
+ * Seguono gli snippet: ognuno e' preceduto dalla lunghezza in byte e contiene
+ * categoria, nome, sintassi, codice, commento e tag. Ogni stringa e' scritta
+ * come lunghezza (-1 per <code>null</code>) seguita dai byte UTF-8. La fine
+ * degli snippet e' segnata da una lunghezza pari a -1.
+ * <p>
+ * Nella versione 1 tutti gli snippet sono compressi insieme con deflate se e'
+ * impostato {@link #FLAG_DEFLATE}. Dalla versione 2 ogni snippet e' compresso
+ * separatamente e dopo gli snippet c'e' un indice (nome, categoria, posizione
+ * e lunghezza di ogni snippet) seguito da un footer di
+ * {@link #FOOTER_LENGTH} byte: la posizione dell'indice, il numero di snippet
+ * e di nuovo {@link #MAGIC}. L'indice permette di leggere i singoli snippet
+ * senza leggere tutto il file (vedi {@link MappedPackage}).
+ * 
+ * @author Alessandro Cocco
+ */
+public class BinaryPackage {
+
+    /** I primi quattro byte di un pacchetto binario ("JCCB"). */
+    public static final int MAGIC = 0x4A434342;
+
+    /** La versione del formato scritta da {@link #write(File, String, boolean)}. */
+    public static final int FORMAT_VERSION = 2;
+
+    /** Indica che gli snippet sono compressi con deflate. */
+    public static final int FLAG_DEFLATE = 1;
+
+    /** La lunghezza del footer dei pacchetti dalla versione 2. */
+    public static final int FOOTER_LENGTH = 16;
+
+    /**
+     * La lunghezza minima di una voce dell'indice: le lunghezze di nome e
+     * categoria, la posizione e la lunghezza dello snippet.
+     */
+    static final int MIN_INDEX_ENTRY_LENGTH = 20;
+
+    /** La posizione del numero di snippet nell'intestazione. */
+    private static final long COUNT_OFFSET = 12;
+
+    /** Lo spazio riservato ai tag di uno snippet, che non hanno un limite. */
+    private static final int MAX_TAGS_LENGTH = 1024 * 1024;
+
+    /**
+     * La dimensione massima di uno snippet, oltre la quale il file e'
+     * corrotto: ogni carattere occupa al piu' 3 byte in UTF-8 e ogni campo e'
+     * preceduto dalla sua lunghezza.
+     */
+    static final int MAX_RECORD_LENGTH = 3 * (ApplicationConstants.CATEGORY_LENGTH + ApplicationConstants.SNIPPET_NAME_LENGTH
+            + ApplicationConstants.SYNTAX_NAME_LENGTH + ApplicationConstants.CODE_LENGTH + ApplicationConstants.COMMENT_LENGTH)
+            + 6 * 4 + MAX_TAGS_LENGTH;
+
+    /** La dimensione dei buffer di lettura e scrittura. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Indica se lo stream contiene un pacchetto binario, senza consumarne il
+     * contenuto.
+     * 
+     * @param input Lo stream, che deve supportare <code>mark()</code>.
+     * @return <code>true</code> se lo stream inizia con {@link #MAGIC}
+     * @throws IOException in caso di errore di lettura
+     */
+    public static boolean isBinaryPackage(InputStream input) throws IOException {
+        input.mark(4);
+
+        try {
+            byte[] magic = new byte[4];
+            int read = 0;
+            while (read < magic.length) {
+                int n = input.read(magic, read, magic.length - read);
+                if (n < 0) {
+                    return false;
+                }
+                read += n;
+            }
+
+            return ByteBuffer.wrap(magic).getInt() == MAGIC;
+        } finally {
+            input.reset();
+        }
+    }
+
+    /**
+     * Scrive in un pacchetto binario gli snippet di una categoria (o tutti),
+     * leggendoli dal database uno alla volta.
+     * 
+     * @param file Il file in cui salvare gli snippet.
+     * @param category La categoria degli snippet da esportare. Se
+     *        <code>null</code> vengono esportati tutti gli snippet.
+     * @param compressed <code>true</code> per comprimere gli snippet.
+     * @return <code>true</code> se l'esportazione avviene con successo,
+     *         <code>false</code> altrimenti
+     */
+    public static boolean write(File file, String category, final boolean compressed) {
+        FileOutputStream output = null;
+
+        try {
+            output = new FileOutputStream(file);
+
+            final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(output, BUFFER_SIZE));
+            stream.writeInt(MAGIC);
+            stream.writeInt(FORMAT_VERSION);
+            stream.writeInt(compressed ? FLAG_DEFLATE : 0);
+            stream.writeInt(0); // il numero di snippet viene scritto alla fine
+            stream.writeUTF(GeneralInfo.APPLICATION_VERSION);
+
+            // l'indice viene costruito in memoria e scritto dopo gli snippet
+            final ByteArrayOutputStream tocBuffer = new ByteArrayOutputStream();
+            final DataOutputStream toc = new DataOutputStream(tocBuffer);
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            final long[] position = { stream.size() };
+            final IOException[] error = new IOException[1];
+
+            int count = DBMS.getInstance().forEachSnippet(category, new SnippetHandler() {
+                public boolean handleSnippet(Snippet snippet) {
+                    try {
+                        buffer.reset();
+                        writeSnippet(new DataOutputStream(buffer), snippet);
+                        byte[] record = compressed ? deflate(buffer.toByteArray(), deflater) : buffer.toByteArray();
+
+                        stream.writeInt(record.length);
+                        stream.write(record);
+
+                        writeString(toc, snippet.getName());
+                        writeString(toc, snippet.getCategory());
+                        toc.writeLong(position[0] + 4);
+                        toc.writeInt(record.length);
+
+                        position[0] += 4 + record.length;
+                        return true;
+                    } catch (IOException ex) {
+                        error[0] = ex;
+                        return false;
+                    }
+                }
+            });
+
+            deflater.end();
+
+            if (error[0] != null) {
+                throw error[0];
+            }
+
+            if (count < 0) {
+                return false;
+            }
+
+            stream.writeInt(-1);
+            long tocOffset = position[0] + 4;
+
+            tocBuffer.writeTo(stream);
+            stream.writeLong(tocOffset);
+            stream.writeInt(count);
+            stream.writeInt(MAGIC);
+            stream.flush();
+
+            // completo l'intestazione
+            ByteBuffer countBuffer = ByteBuffer.allocate(4);
+            countBuffer.putInt(count).flip();
+            output.getChannel().write(countBuffer, COUNT_OFFSET);
+
+            return true;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return false;
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Legge un pacchetto binario passando gli snippet all'handler uno alla
+     * volta.
+     * 
+     * @param input Lo stream posizionato all'inizio del pacchetto.
+     * @param handler L'handler che riceve gli snippet.
+     * @return il numero di snippet letti
+     * @throws IOException se il pacchetto non e' valido o in caso di errore di
+     *         lettura
+     */
+    public static int read(InputStream input, SnippetHandler handler) throws IOException {
+        DataInputStream header = new DataInputStream(input);
+
+        if (header.readInt() != MAGIC) {
+            throw new IOException("not a binary package");
+        }
+
+        int version = header.readInt();
+        if (version > FORMAT_VERSION) {
+            throw new IOException("unsupported package format " + version);
+        }
+
+        int flags = header.readInt();
+        int expected = header.readInt();
+        header.readUTF(); // la versione di jCodeCollector
+
+        boolean compressed = (flags & FLAG_DEFLATE) != 0;
+        InputStream stream = input;
+        if (compressed && version == 1) {
+            stream = new BufferedInputStream(new InflaterInputStream(input, new Inflater(), BUFFER_SIZE), BUFFER_SIZE);
+        }
+
+        DataInputStream body = new DataInputStream(stream);
+        Inflater inflater = new Inflater();
+        byte[] record = new byte[BUFFER_SIZE];
+        int count = 0;
+
+        try {
+            while (count < expected) {
+                int length = body.readInt();
+                if (length < 0) {
+                    break;
+                }
+
+                if (length > MAX_RECORD_LENGTH) {
+                    throw new IOException("corrupted package: snippet of " + length + " bytes");
+                }
+
+                if (length > record.length) {
+                    record = new byte[length];
+                }
+
+                body.readFully(record, 0, length);
+                count++;
+
+                Snippet snippet = decode(record, 0, length, compressed && version > 1 ? inflater : null);
+                if (!handler.handleSnippet(snippet)) {
+                    break;
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+
+        return count;
+    }
+
+    /**
+     * Decodifica uno snippet.
+     * 
+     * @param data I byte dello snippet.
+     * @param offset La posizione dello snippet in <code>data</code>.
+     * @param length La lunghezza dello snippet.
+     * @param inflater L'inflater con cui decomprimere lo snippet, oppure
+     *        <code>null</code> se lo snippet non e' compresso.
+     * @return lo snippet decodificato
+     * @throws IOException se lo snippet non e' valido
+     */
+    static Snippet decode(byte[] data, int offset, int length, Inflater inflater) throws IOException {
+        if (inflater != null) {
+            data = inflate(data, offset, length, inflater);
+            offset = 0;
+            length = data.length;
+        }
+
+        return readSnippet(new DataInputStream(new ByteArrayInputStream(data, offset, length)));
+    }
+
+    private static byte[] deflate(byte[] data, Deflater deflater) {
+        deflater.reset();
+        deflater.setInput(data);
+        deflater.finish();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 2 + 16);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buffer);
+            output.write(buffer, 0, n);
+        }
+
+        return output.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length, Inflater inflater) throws IOException {
+        inflater.reset();
+        inflater.setInput(data, offset, length);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream((int) Math.min(length * 3L, MAX_RECORD_LENGTH));
+        byte[] buffer = new byte[4096];
+
+        try {
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("corrupted package: truncated snippet");
+                }
+
+                output.write(buffer, 0, n);
+                if (output.size() > MAX_RECORD_LENGTH) {
+                    throw new IOException("corrupted package: snippet too large");
+                }
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("corrupted package: " + ex.getMessage());
+        }
+
+        return output.toByteArray();
+    }
+
+    private static void writeSnippet(DataOutputStream output, Snippet snippet) throws IOException {
+        writeString(output, snippet.getCategory());
+        writeString(output, snippet.getName());
+        writeString(output, snippet.getSyntax());
+        writeString(output, snippet.getCode());
+        writeString(output, snippet.getComment());
+
+        String[] tags = snippet.getTags();
+        output.writeInt(tags.length);
+        for (String tag : tags) {
+            writeString(output, tag);
+        }
+    }
+
+    private static Snippet readSnippet(DataInputStream input) throws IOException {
+        String category = readString(input);
+        String name = readString(input);
+        String syntax = readString(input);
+        String code = readString(input);
+        String comment = readString(input);
+
+        int count = input.readInt();
+        if (count < 0 || count > input.available()) {
+            throw new IOException("corrupted package: " + count + " tags");
+        }
+
+        String[] tags = new String[count];
+        for (int i = 0; i < count; i++) {
+            tags[i] = readString(input);
+        }
+
+        return new Snippet(-1, category, name, tags, code, comment, syntax, false);
+    }
+
+    static void writeString(DataOutputStream output, String text) throws IOException {
+        if (text == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = text.getBytes(CHARSET);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        if (length > input.available()) {
+            throw new IOException("corrupted package: string of " + length + " bytes");
+        }
+
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+
+    private BinaryPackage() {
+        // do nothing
+    }
+
+}
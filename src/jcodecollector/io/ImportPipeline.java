@@ -0,0 +1,437 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.data.DBMS;
+import jcodecollector.data.InsertResult;
+import jcodecollector.util.ApplicationConstants;
+
+/**
+ * Importa un pacchetto (o alcuni snippet di un {@link MappedPackage}) con tre
+ * stadi in parallelo, collegati da code di capacita' limitata: la lettura del
+ * file (nel thread che chiama {@link #run()}), la validazione degli snippet e
+ * la scrittura nel database a gruppi di {@link #WRITE_BATCH_SIZE}. Uno stadio
+ * piu' lento blocca quelli precedenti quando la sua coda e' piena, quindi la
+ * memoria usata resta costante. Se uno stadio fallisce, gli altri vengono
+ * fermati e l'errore viene rilanciato da {@link #run()}.
+ * <p>
+ * Ogni gruppo viene scritto con transazioni di {@link #COMMIT_SIZE} snippet,
+ * tra le quali le altre modifiche possono accedere al database. L'elenco
+ * degli snippet, i conteggi e la ricerca leggono anche le righe non ancora
+ * confermate e non attendono le transazioni in corso; la lettura di uno
+ * snippet appena importato ne attende invece la fine, perche' Derby non ha
+ * versioni multiple delle righe.
+ * <p>
+ * La validazione elimina gli spazi iniziali e finali, i tag vuoti o ripetuti e
+ * scarta gli snippet che non rispettano le lunghezze di
+ * {@link ApplicationConstants}.
+ * 
+ * @author Alessandro Cocco
+ */
+public class ImportPipeline {
+
+    /** Riceve l'avanzamento dell'importazione. */
+    public interface ProgressListener {
+
+        /**
+         * Notifica l'avanzamento dell'importazione. Viene chiamato dal thread
+         * di scrittura, non dall'EDT.
+         * 
+         * @param read Il numero di snippet letti finora.
+         * @param written Il numero di snippet elaborati (inseriti o scartati)
+         *        finora.
+         */
+        public void progress(int read, int written);
+
+    }
+
+    /** La capacita' delle code tra uno stadio e l'altro. */
+    public static final int QUEUE_CAPACITY = 256;
+
+    /** Il numero di snippet presi dalla coda e scritti insieme. */
+    public static final int WRITE_BATCH_SIZE = 100;
+
+    /** Il numero di snippet scritti nel database in una transazione. */
+    public static final int COMMIT_SIZE = 20;
+
+    /** Segnala la fine degli snippet sulle code. */
+    private static final Snippet END = new Snippet();
+
+    /** Segnala sulle code che l'importazione e' fallita. */
+    private static final Snippet ABORT = new Snippet();
+
+    /** Il pacchetto da importare. */
+    private File file;
+
+    /** Il pacchetto binario da cui importare solo alcuni snippet. */
+    private MappedPackage mappedPackage;
+
+    /** Le posizioni degli snippet da importare da {@link #mappedPackage}. */
+    private int[] indexes;
+
+    /** Gli snippet letti e non ancora validati. */
+    private BlockingQueue<Snippet> parsed = new ArrayBlockingQueue<Snippet>(QUEUE_CAPACITY);
+
+    /** Gli snippet validati e non ancora scritti. */
+    private BlockingQueue<Snippet> validated = new ArrayBlockingQueue<Snippet>(QUEUE_CAPACITY);
+
+    /** Gli snippet scartati dalla validazione. */
+    private InsertResult rejected = new InsertResult();
+
+    /** L'esito della scrittura nel database. */
+    private InsertResult written = new InsertResult();
+
+    /** Il numero di snippet letti. */
+    private volatile int read = 0;
+
+    /** Il primo errore che ha fermato uno stadio. */
+    private volatile Throwable failure;
+
+    private ProgressListener listener;
+
+    /**
+     * Crea una nuova importazione del pacchetto indicato.
+     * 
+     * @param file Il pacchetto da importare.
+     */
+    public ImportPipeline(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Crea una nuova importazione di alcuni snippet di un pacchetto binario.
+     * 
+     * @param mappedPackage Il pacchetto.
+     * @param indexes Le posizioni degli snippet da importare.
+     */
+    public ImportPipeline(MappedPackage mappedPackage, int[] indexes) {
+        this.mappedPackage = mappedPackage;
+        this.indexes = indexes;
+    }
+
+    /**
+     * Imposta il listener che riceve l'avanzamento dell'importazione.
+     * 
+     * @param listener Il listener (puo' essere <code>null</code>).
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Esegue l'importazione e attende che tutti gli stadi siano terminati.
+     * Se il thread viene interrotto l'importazione si ferma: gli snippet gia'
+     * scritti restano nel database.
+     * 
+     * @return il numero di snippet letti, oppure -1 se il file non e' valido
+     *         (gli snippet che precedono l'errore vengono comunque importati)
+     * @throws InterruptedException se il thread viene interrotto
+     * @throws RuntimeException se uno stadio fallisce (un {@link Error} viene
+     *         rilanciato cosi' com'e')
+     */
+    public int run() throws InterruptedException {
+        Thread validator = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    validate();
+                } catch (Throwable ex) {
+                    abort(ex);
+                }
+            }
+        }, "import-validator");
+
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    write();
+                } catch (Throwable ex) {
+                    abort(ex);
+                }
+            }
+        }, "import-writer");
+
+        validator.start();
+        writer.start();
+
+        try {
+            SnippetHandler handler = new SnippetHandler() {
+                public boolean handleSnippet(Snippet snippet) {
+                    // uno degli stadi successivi e' fallito
+                    if (failure != null) {
+                        return false;
+                    }
+
+                    try {
+                        parsed.put(snippet);
+                        read++;
+                        return true;
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            };
+
+            int count = 0;
+            try {
+                if (mappedPackage != null) {
+                    count = mappedPackage.read(indexes, handler);
+                } else {
+                    count = PackageManager.readPackage(file, handler);
+                }
+            } catch (Throwable ex) {
+                abort(ex);
+            }
+
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (failure == null) {
+                parsed.put(END);
+            }
+            validator.join();
+            writer.join();
+
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            } else if (failure != null) {
+                throw new RuntimeException(failure);
+            }
+
+            return count;
+        } catch (InterruptedException ex) {
+            validator.interrupt();
+            writer.interrupt();
+            throw ex;
+        }
+    }
+
+    /**
+     * Ferma l'importazione dopo l'errore di uno stadio: svuota le code, cosi'
+     * che nessuno stadio resti bloccato su una coda piena, e vi inserisce
+     * {@link #ABORT}, che ferma gli stadi in attesa di snippet.
+     * 
+     * @param cause L'errore dello stadio.
+     */
+    private synchronized void abort(Throwable cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+
+        parsed.clear();
+        parsed.offer(ABORT);
+        validated.clear();
+        validated.offer(ABORT);
+    }
+
+    /**
+     * Restituisce l'esito dell'importazione: gli snippet inseriti e quelli
+     * scartati, dalla validazione o dal database. Va chiamato al termine di
+     * {@link #run()}.
+     * 
+     * @return l'esito dell'importazione
+     */
+    public InsertResult getResult() {
+        InsertResult result = new InsertResult();
+        result.add(rejected);
+        result.add(written);
+        return result;
+    }
+
+    /** Lo stadio di validazione. */
+    private void validate() {
+        try {
+            Snippet snippet;
+            while ((snippet = parsed.take()) != END) {
+                if (snippet == ABORT || failure != null) {
+                    return;
+                }
+
+                String error;
+
+                try {
+                    error = normalize(snippet);
+                } catch (RuntimeException ex) {
+                    error = ex.toString();
+                }
+
+                if (error == null) {
+                    validated.put(snippet);
+                } else {
+                    synchronized (rejected) {
+                        rejected.addFailure(trim(snippet.getName()), error);
+                    }
+                }
+            }
+
+            validated.put(END);
+        } catch (InterruptedException ex) {
+            // importazione annullata
+        }
+    }
+
+    /** Lo stadio di scrittura nel database. */
+    private void write() {
+        ArrayList<Snippet> batch = new ArrayList<Snippet>(WRITE_BATCH_SIZE);
+
+        try {
+            boolean end = false;
+            while (!end) {
+                // attendo il primo snippet, poi prendo quelli gia' pronti
+                Snippet snippet = validated.take();
+                if (snippet == ABORT) {
+                    return;
+                }
+
+                end = snippet == END;
+                if (!end) {
+                    batch.add(snippet);
+                }
+
+                while (!end && batch.size() < WRITE_BATCH_SIZE && (snippet = validated.poll()) != null) {
+                    if (snippet == ABORT) {
+                        return;
+                    }
+
+                    end = snippet == END;
+                    if (!end) {
+                        batch.add(snippet);
+                    }
+                }
+
+                if (!batch.isEmpty()) {
+                    write(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException ex) {
+            // importazione annullata
+        }
+    }
+
+    private void write(ArrayList<Snippet> batch) {
+        InsertResult result = new InsertResult();
+
+        // una chiamata per transazione: tra una e l'altra il database resta
+        // libero per le altre modifiche
+        for (int first = 0; first < batch.size(); first += COMMIT_SIZE) {
+            List<Snippet> chunk = batch.subList(first, Math.min(first + COMMIT_SIZE, batch.size()));
+
+            try {
+                result.add(DBMS.getInstance().insertSnippets(chunk, COMMIT_SIZE));
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                for (Snippet snippet : chunk) {
+                    result.addFailure(snippet.getName(), ex.toString());
+                }
+            }
+        }
+
+        int done;
+        synchronized (rejected) {
+            written.add(result);
+            done = written.getInserted() + written.getFailed() + rejected.getFailed();
+        }
+
+        if (listener != null) {
+            listener.progress(read, done);
+        }
+    }
+
+    /**
+     * Normalizza lo snippet indicato: elimina gli spazi superflui e i tag
+     * vuoti o ripetuti, assegna gli snippet senza categoria a
+     * "Uncategorized" e controlla la lunghezza dei campi.
+     * 
+     * @param snippet Lo snippet da normalizzare.
+     * @return il motivo per cui lo snippet non e' valido, oppure
+     *         <code>null</code> se lo snippet e' valido
+     */
+    public static String normalize(Snippet snippet) {
+        String name = trim(snippet.getName());
+        String category = trim(snippet.getCategory());
+        String syntax = trim(snippet.getSyntax());
+        String code = snippet.getCode() == null ? "" : snippet.getCode();
+        String comment = snippet.getComment() == null ? "" : snippet.getComment();
+
+        if (name.length() == 0) {
+            return "missing name";
+        }
+
+        if (category.length() == 0) {
+            category = "Uncategorized";
+        }
+
+        LinkedHashSet<String> tags = new LinkedHashSet<String>();
+        if (snippet.getTags() != null) {
+            for (String tag : Arrays.asList(snippet.getTags())) {
+                tag = trim(tag);
+                if (tag.length() > ApplicationConstants.TAG_LENGTH) {
+                    return "tag \"" + tag + "\" longer than " + ApplicationConstants.TAG_LENGTH + " characters";
+                }
+                if (tag.length() > 0) {
+                    tags.add(tag);
+                }
+            }
+        }
+
+        if (name.length() > ApplicationConstants.SNIPPET_NAME_LENGTH) {
+            return "name longer than " + ApplicationConstants.SNIPPET_NAME_LENGTH + " characters";
+        }
+
+        if (category.length() > ApplicationConstants.CATEGORY_LENGTH) {
+            return "category longer than " + ApplicationConstants.CATEGORY_LENGTH + " characters";
+        }
+
+        if (syntax.length() > ApplicationConstants.SYNTAX_NAME_LENGTH) {
+            return "syntax longer than " + ApplicationConstants.SYNTAX_NAME_LENGTH + " characters";
+        }
+
+        if (code.length() > ApplicationConstants.CODE_LENGTH) {
+            return "code longer than " + ApplicationConstants.CODE_LENGTH + " characters";
+        }
+
+        if (comment.length() > ApplicationConstants.COMMENT_LENGTH) {
+            return "comment longer than " + ApplicationConstants.COMMENT_LENGTH + " characters";
+        }
+
+        snippet.setName(name);
+        snippet.setCategory(category);
+        snippet.setSyntax(syntax);
+        snippet.setCode(code);
+        snippet.setComment(comment);
+        snippet.setTags(tags.toArray(new String[] {}));
+
+        return null;
+    }
+
+    private static String trim(String text) {
+        return text == null ? "" : text.trim();
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.Inflater;
+
+import jcodecollector.common.bean.Snippet;
+
+/**
+ * Accesso diretto agli snippet di un pacchetto binario (dalla versione 2 del
+ * formato di {@link BinaryPackage}). Il file viene mappato in memoria e
+ * all'apertura viene letto solo l'indice in fondo al file: nomi e categorie
+ * sono subito disponibili, mentre ogni snippet viene decodificato solo quando
+ * viene richiesto con {@link #getSnippet(int)}.
+ * 
+ * @author Alessandro Cocco
+ */
+public class MappedPackage {
+
+    /** Il file mappato in memoria. */
+    private MappedByteBuffer buffer;
+
+    /** Indica se gli snippet sono compressi. */
+    private boolean compressed;
+
+    /** I nomi degli snippet, nell'ordine del file. */
+    private String[] names;
+
+    /** Le categorie degli snippet. */
+    private String[] categories;
+
+    /** La posizione di ogni snippet nel file. */
+    private long[] offsets;
+
+    /** La lunghezza di ogni snippet nel file. */
+    private int[] lengths;
+
+    private MappedPackage() {
+        // usare open()
+    }
+
+    /**
+     * Apre il pacchetto indicato leggendone l'indice.
+     * 
+     * @param file Il pacchetto da aprire.
+     * @return il pacchetto aperto
+     * @throws IOException se il file non e' un pacchetto binario con indice o
+     *         in caso di errore di lettura
+     */
+    public static MappedPackage open(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = input.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("package too large");
+            }
+
+            MappedPackage result = new MappedPackage();
+            result.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            result.readIndex();
+
+            return result;
+        } finally {
+            // la mappatura resta valida anche dopo la chiusura del file
+            input.close();
+        }
+    }
+
+    /**
+     * Indica se il file indicato e' un pacchetto binario con indice, cioe' se
+     * puo' essere aperto con {@link #open(File)}.
+     * 
+     * @param file Il file da controllare.
+     * @return <code>true</code> se il file ha un indice
+     */
+    public static boolean hasIndex(File file) {
+        RandomAccessFile input = null;
+
+        try {
+            input = new RandomAccessFile(file, "r");
+            if (input.length() < BinaryPackage.FOOTER_LENGTH + 16) {
+                return false;
+            }
+
+            if (input.readInt() != BinaryPackage.MAGIC || input.readInt() < 2) {
+                return false;
+            }
+
+            input.seek(input.length() - 4);
+            return input.readInt() == BinaryPackage.MAGIC;
+        } catch (IOException ex) {
+            return false;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void readIndex() throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        int size = view.capacity();
+
+        if (size < BinaryPackage.FOOTER_LENGTH + 16 || view.getInt(0) != BinaryPackage.MAGIC) {
+            throw new IOException("not a binary package");
+        }
+
+        if (view.getInt(4) < 2) {
+            throw new IOException("package without index");
+        }
+
+        compressed = (view.getInt(8) & BinaryPackage.FLAG_DEFLATE) != 0;
+
+        // il footer: posizione dell'indice, numero di snippet, numero magico
+        int footer = size - BinaryPackage.FOOTER_LENGTH;
+        long tocOffset = view.getLong(footer);
+        int count = view.getInt(footer + 8);
+        if (view.getInt(footer + 12) != BinaryPackage.MAGIC || tocOffset < 0 || tocOffset > footer || count < 0) {
+            throw new IOException("corrupted package index");
+        }
+
+        // un numero di snippet danneggiato non deve far allocare gli array
+        // prima di leggere l'indice
+        if (count > (footer - tocOffset) / BinaryPackage.MIN_INDEX_ENTRY_LENGTH) {
+            throw new IOException("corrupted package index");
+        }
+
+        names = new String[count];
+        categories = new String[count];
+        offsets = new long[count];
+        lengths = new int[count];
+
+        view.limit(footer);
+        view.position((int) tocOffset);
+
+        try {
+            for (int i = 0; i < count; i++) {
+                names[i] = readString(view);
+                categories[i] = readString(view);
+                offsets[i] = view.getLong();
+                lengths[i] = view.getInt();
+
+                if (offsets[i] < 0 || lengths[i] < 0 || offsets[i] + lengths[i] > tocOffset) {
+                    throw new IOException("corrupted package index");
+                }
+            }
+        } catch (RuntimeException ex) {
+            throw new IOException("corrupted package index: " + ex);
+        }
+    }
+
+    private static String readString(ByteBuffer view) throws IOException {
+        int length = view.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        if (length > view.remaining()) {
+            throw new IOException("corrupted package index");
+        }
+
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Restituisce il numero di snippet nel pacchetto.
+     * 
+     * @return il numero di snippet nel pacchetto
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Restituisce il nome dello snippet indicato.
+     * 
+     * @param index La posizione dello snippet nel pacchetto.
+     * @return il nome dello snippet
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Restituisce la categoria dello snippet indicato.
+     * 
+     * @param index La posizione dello snippet nel pacchetto.
+     * @return la categoria dello snippet
+     */
+    public String getCategory(int index) {
+        return categories[index];
+    }
+
+    /**
+     * Legge lo snippet indicato.
+     * 
+     * @param index La posizione dello snippet nel pacchetto.
+     * @return lo snippet
+     * @throws IOException se lo snippet non e' valido
+     */
+    public Snippet getSnippet(int index) throws IOException {
+        byte[] record = new byte[lengths[index]];
+
+        ByteBuffer view = buffer.duplicate();
+        view.position((int) offsets[index]);
+        view.get(record);
+
+        Inflater inflater = compressed ? new Inflater() : null;
+        try {
+            return BinaryPackage.decode(record, 0, record.length, inflater);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Legge gli snippet indicati passandoli all'handler uno alla volta.
+     * 
+     * @param indexes Le posizioni degli snippet nel pacchetto.
+     * @param handler L'handler che riceve gli snippet.
+     * @return il numero di snippet letti, oppure -1 se uno snippet non e'
+     *         valido
+     */
+    public int read(int[] indexes, SnippetHandler handler) {
+        int count = 0;
+
+        try {
+            for (int index : indexes) {
+                count++;
+                if (!handler.handleSnippet(getSnippet(index))) {
+                    break;
+                }
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return -1;
+        }
+
+        return count;
+    }
+
+}
@@ -15,26 +15,43 @@
  */
 package jcodecollector.io;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import jcodecollector.data.DBMS;
 import jcodecollector.common.bean.Snippet;
+import jcodecollector.util.ApplicationConstants;
 import jcodecollector.util.GeneralInfo;
 
-import org.jdom.Document;
-import org.jdom.Element;
-import org.jdom.input.SAXBuilder;
-import org.jdom.output.Format;
-import org.jdom.output.XMLOutputter;
 
 public class PackageManager {
 
+    /** La dimensione del buffer usato per scrivere i pacchetti. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Gli elementi di uno snippet. */
+    private static final List<String> FIELDS = Arrays.asList("category", "name", "tag", "syntax", "code", "comment");
+
     /**
-     * Esporta in XML un gruppo di snippet.
+     * Esporta in XML un gruppo di snippet, oppure nel formato di
+     * {@link BinaryPackage} se il nome del file termina con
+     * {@link ApplicationConstants#JCC_BINARY_EXTENSION}.
      * 
      * @param file Il file in cui salvare gli snippet.
      * @param category La categoria degli snippet da esportare. Se
@@ -43,98 +60,236 @@ public class PackageManager {
      *         <code>false</code> altrimenti
      */
     public static boolean exportSnippets(File file, String category) {
-        ArrayList<Snippet> array = null;
-
-        if (category == null) {
-            array = DBMS.getInstance().getAllSnippets();
-        } else {
-            array = DBMS.getInstance().getSnippets(category);
+        // i pacchetti binari si riconoscono dall'estensione
+        if (file.getName().endsWith(ApplicationConstants.JCC_BINARY_EXTENSION)) {
+            return BinaryPackage.write(file, category, true);
         }
 
-        Element root = new Element("jcc-snippets-package");
-        root.setAttribute("version", GeneralInfo.APPLICATION_VERSION);
+        OutputStream output = null;
+        XMLStreamWriter writer = null;
 
-        Iterator<Snippet> iterator = array.iterator();
-        while (iterator.hasNext()) {
-            Snippet snippet = iterator.next();
-            Element element = new Element("snippet");
+        try {
+            output = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(output, "UTF-8");
 
-            Element category_xml = new Element("category");
-            category_xml.setText(snippet.getCategory());
-            element.addContent(category_xml);
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters("\n");
+            writer.writeStartElement("jcc-snippets-package");
+            writer.writeAttribute("version", GeneralInfo.APPLICATION_VERSION);
 
-            Element name_xml = new Element("name");
-            name_xml.setText(snippet.getName());
-            element.addContent(name_xml);
+            // gli snippet vengono scritti man mano che vengono letti dal
+            // database
+            final XMLStreamWriter snippetWriter = writer;
+            final XMLStreamException[] error = new XMLStreamException[1];
+            int count = DBMS.getInstance().forEachSnippet(category, new SnippetHandler() {
+                public boolean handleSnippet(Snippet snippet) {
+                    try {
+                        writeSnippet(snippetWriter, snippet);
+                        return true;
+                    } catch (XMLStreamException ex) {
+                        error[0] = ex;
+                        return false;
+                    }
+                }
+            });
 
-            String[] tags = snippet.getTags();
-            for (String tag : tags) {
-                Element tag_xml = new Element("tag");
-                tag_xml.setText(tag);
-                element.addContent(tag_xml);
+            if (error[0] != null) {
+                throw error[0];
             }
 
-            Element syntax_xml = new Element("syntax");
-            syntax_xml.setText(snippet.getSyntax());
-            element.addContent(syntax_xml);
-
-            Element code_xml = new Element("code");
-            code_xml.setText(snippet.getCode());
-            element.addContent(code_xml);
-
-            Element comment_xml = new Element("comment");
-            comment_xml.setText(snippet.getComment());
-            element.addContent(comment_xml);
-
-            root.addContent(element);
-        }
+            if (count < 0) {
+                return false;
+            }
 
-        try {
-            XMLOutputter outputter = new XMLOutputter(Format.getPrettyFormat());
-            outputter.output(new Document(root), new FileOutputStream(file));
+            writer.writeCharacters("\n");
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.flush();
             return true;
         } catch (Exception ex) {
             ex.printStackTrace();
             return false;
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (XMLStreamException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
         }
     }
 
+    /** Scrive un elemento <code>snippet</code>. */
+    private static void writeSnippet(XMLStreamWriter writer, Snippet snippet) throws XMLStreamException {
+        writer.writeCharacters("\n  ");
+        writer.writeStartElement("snippet");
+
+        writeElement(writer, "category", snippet.getCategory());
+        writeElement(writer, "name", snippet.getName());
+        for (String tag : snippet.getTags()) {
+            writeElement(writer, "tag", tag);
+        }
+        writeElement(writer, "syntax", snippet.getSyntax());
+        writeElement(writer, "code", snippet.getCode());
+        writeElement(writer, "comment", snippet.getComment());
+
+        writer.writeCharacters("\n  ");
+        writer.writeEndElement();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException {
+        writer.writeCharacters("\n    ");
+        writer.writeStartElement(name);
+        if (text != null) {
+            writer.writeCharacters(text);
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Legge tutti gli snippet contenuti nel pacchetto indicato.
+     * 
+     * @param file Il pacchetto da leggere.
+     * @return gli snippet letti, oppure <code>null</code> se il file non e'
+     *         valido
+     */
     public static ArrayList<Snippet> readPackage(File file) {
-        ArrayList<Snippet> array = new ArrayList<Snippet>();
-        Element root = null;
+        final ArrayList<Snippet> array = new ArrayList<Snippet>();
+
+        int count = readPackage(file, new SnippetHandler() {
+            public boolean handleSnippet(Snippet snippet) {
+                return array.add(snippet);
+            }
+        });
+
+        return count < 0 ? null : array;
+    }
+
+    /**
+     * Legge il pacchetto indicato passando gli snippet all'handler uno alla
+     * volta, man mano che vengono letti: il file non viene mai caricato in
+     * memoria per intero. Il formato (XML o {@link BinaryPackage}) viene
+     * riconosciuto dai primi byte del file.
+     * 
+     * @param file Il pacchetto da leggere.
+     * @param handler L'handler che riceve gli snippet.
+     * @return il numero di snippet letti, oppure -1 se il file non e' valido
+     *         (l'handler puo' aver gia' ricevuto gli snippet che precedono
+     *         l'errore)
+     */
+    public static int readPackage(File file, SnippetHandler handler) {
+        InputStream input = null;
+        XMLStreamReader reader = null;
+        int count = 0;
 
         try {
-            SAXBuilder builder = new SAXBuilder();
-            root = builder.build(file).getRootElement();
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+
+            input = new BufferedInputStream(new FileInputStream(file));
+            if (BinaryPackage.isBinaryPackage(input)) {
+                return BinaryPackage.read(input, handler);
+            }
+
+            reader = factory.createXMLStreamReader(input);
+
+            // l'elemento radice
+            reader.nextTag();
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                if (!reader.getLocalName().equals("snippet")) {
+                    skipElement(reader);
+                    continue;
+                }
+
+                count++;
+                if (!handler.handleSnippet(readSnippet(reader))) {
+                    break;
+                }
+            }
+
+            return count;
         } catch (Exception ex) {
-            return null;
+            ex.printStackTrace();
+            return -1;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
         }
+    }
 
-        @SuppressWarnings("unchecked")
-        Iterator<Element> iterator = root.getChildren("snippet").iterator();
-        while (iterator.hasNext()) {
-            // l'elemento e' uno snippet
-            Element e = iterator.next();
-
-            String category = e.getChildTextTrim("category");
-            String name = e.getChildTextTrim("name");
-            String syntax = e.getChildTextTrim("syntax");
-            String code = e.getChildTextTrim("code");
-            String comment = e.getChildTextTrim("comment");
-
-            @SuppressWarnings("unchecked")
-            List<Element> tagElements = e.getChildren("tag");
-            String[] tags = new String[tagElements.size()];
-            for (int i = 0; i < tags.length; i++) {
-                tags[i] = tagElements.get(i).getTextTrim();
+    /**
+     * Legge un elemento <code>snippet</code>. Il reader deve trovarsi
+     * all'inizio dell'elemento e viene lasciato alla sua fine.
+     */
+    private static Snippet readSnippet(XMLStreamReader reader) throws XMLStreamException {
+        String category = null;
+        String name = null;
+        String syntax = null;
+        String code = null;
+        String comment = null;
+        ArrayList<String> tags = new ArrayList<String>();
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String element = reader.getLocalName();
+            if (!FIELDS.contains(element)) {
+                skipElement(reader);
+                continue;
             }
 
-            // creo lo snippet
-            Snippet snippet = new Snippet(-1, category, name, tags, code, comment, syntax, false);
-            array.add(snippet);
+            String text = reader.getElementText().trim();
+            if (element.equals("tag")) {
+                tags.add(text);
+            } else if (element.equals("category") && category == null) {
+                category = text;
+            } else if (element.equals("name") && name == null) {
+                name = text;
+            } else if (element.equals("syntax") && syntax == null) {
+                syntax = text;
+            } else if (element.equals("code") && code == null) {
+                code = text;
+            } else if (element.equals("comment") && comment == null) {
+                comment = text;
+            }
         }
 
-        return array;
+        return new Snippet(-1, category, name, tags.toArray(new String[] {}), code, comment, syntax, false);
+    }
+
+    /** Salta l'elemento corrente e tutto il suo contenuto. */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
     }
 
     private PackageManager() {
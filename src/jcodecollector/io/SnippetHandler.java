@@ -0,0 +1,36 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.io;
+
+import jcodecollector.common.bean.Snippet;
+
+/**
+ * Riceve uno alla volta gli snippet letti da un pacchetto.
+ * 
+ * @author Alessandro Cocco
+ */
+public interface SnippetHandler {
+
+    /**
+     * Elabora uno snippet appena letto.
+     * 
+     * @param snippet Lo snippet letto.
+     * @return <code>true</code> per continuare la lettura, <code>false</code>
+     *         per interromperla
+     */
+    public boolean handleSnippet(Snippet snippet);
+
+}
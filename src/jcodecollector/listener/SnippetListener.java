@@ -16,6 +16,7 @@
 package jcodecollector.listener;
 
 import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
 
 /**
  * @author Alessandro Cocco
@@ -41,7 +42,7 @@ public interface SnippetListener {
      * 
      * @param snippet Lo snippet rimosso.
      */
-    public void snippetRemoved(Snippet snippet);
+    public void snippetRemoved(SnippetHeader snippet);
 
     /**
      * Invocato quando lo stato di uno snippet cambia.
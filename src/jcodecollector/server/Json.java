@@ -0,0 +1,426 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.common.bean.SnippetHeader;
+
+/**
+ * Lettura e scrittura dei documenti JSON scambiati con i client del
+ * {@link SnippetServer}. Il parser costruisce oggetti ({@link Map}), array
+ * ({@link List}), stringhe, numeri ({@link Double}), valori booleani e
+ * <code>null</code>.
+ * 
+ * @author Alessandro Cocco
+ */
+public class Json {
+
+    /** Il documento da leggere. */
+    private String text;
+
+    /** La posizione del prossimo carattere da leggere. */
+    private int position = 0;
+
+    private Json(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Legge un documento JSON.
+     * 
+     * @param text Il documento da leggere.
+     * @return il valore letto
+     * @throws IllegalArgumentException se il documento non e' valido
+     */
+    public static Object parse(String text) {
+        Json json = new Json(text);
+        Object value = json.readValue();
+
+        json.skipWhitespace();
+        if (json.position < text.length()) {
+            throw json.error("unexpected content");
+        }
+
+        return value;
+    }
+
+    /**
+     * Costruisce uno snippet a partire da un oggetto JSON. I campi mancanti
+     * vengono presi dallo snippet indicato, se presente.
+     * 
+     * @param object L'oggetto JSON.
+     * @param defaults Lo snippet da cui prendere i campi mancanti, oppure
+     *        <code>null</code>.
+     * @return lo snippet costruito
+     * @throws IllegalArgumentException se un campo ha un tipo non valido
+     */
+    public static Snippet toSnippet(Object object, Snippet defaults) {
+        if (!(object instanceof Map<?, ?>)) {
+            throw new IllegalArgumentException("a snippet must be a JSON object");
+        }
+
+        Map<?, ?> map = (Map<?, ?>) object;
+        Snippet snippet = defaults == null ? new Snippet() : new Snippet(defaults, defaults.getCode(), defaults.getComment());
+
+        if (map.containsKey("name")) {
+            snippet.setName(getString(map, "name"));
+        }
+        if (map.containsKey("category")) {
+            snippet.setCategory(getString(map, "category"));
+        }
+        if (map.containsKey("syntax")) {
+            snippet.setSyntax(getString(map, "syntax"));
+        }
+        if (map.containsKey("code")) {
+            snippet.setCode(getString(map, "code"));
+        }
+        if (map.containsKey("comment")) {
+            snippet.setComment(getString(map, "comment"));
+        }
+        if (map.containsKey("locked")) {
+            if (!(map.get("locked") instanceof Boolean)) {
+                throw new IllegalArgumentException("\"locked\" must be a boolean");
+            }
+            snippet.setLocked((Boolean) map.get("locked"));
+        }
+        if (map.containsKey("tags")) {
+            if (!(map.get("tags") instanceof List<?>)) {
+                throw new IllegalArgumentException("\"tags\" must be an array");
+            }
+
+            ArrayList<String> tags = new ArrayList<String>();
+            for (Object tag : (List<?>) map.get("tags")) {
+                if (!(tag instanceof String)) {
+                    throw new IllegalArgumentException("\"tags\" must contain only strings");
+                }
+                tags.add((String) tag);
+            }
+            snippet.setTags(tags.toArray(new String[] {}));
+        }
+
+        return snippet;
+    }
+
+    private static String getString(Map<?, ?> map, String key) {
+        Object value = map.get(key);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException("\"" + key + "\" must be a string");
+        }
+
+        return (String) value;
+    }
+
+    /**
+     * Scrive uno snippet (o la sua intestazione) come oggetto JSON.
+     * 
+     * @param snippet Lo snippet da scrivere.
+     * @return l'oggetto JSON
+     */
+    public static String toJson(SnippetHeader snippet) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"name\":").append(quote(snippet.getName()));
+        builder.append(",\"category\":").append(quote(snippet.getCategory()));
+        builder.append(",\"tags\":").append(toJson(getTags(snippet)));
+        builder.append(",\"syntax\":").append(quote(snippet.getSyntax()));
+        builder.append(",\"locked\":").append(snippet.isLocked());
+
+        if (snippet instanceof Snippet) {
+            builder.append(",\"code\":").append(quote(((Snippet) snippet).getCode()));
+            builder.append(",\"comment\":").append(quote(((Snippet) snippet).getComment()));
+        }
+
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Scrive un elenco di stringhe come array JSON.
+     * 
+     * @param values Le stringhe da scrivere.
+     * @return l'array JSON
+     */
+    public static String toJson(Collection<String> values) {
+        StringBuilder builder = new StringBuilder("[");
+        for (String value : values) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(quote(value));
+        }
+
+        return builder.append(']').toString();
+    }
+
+    /**
+     * Scrive una mappa da stringhe a elenchi di stringhe come oggetto JSON.
+     * 
+     * @param map La mappa da scrivere.
+     * @return l'oggetto JSON
+     */
+    public static String toJson(Map<String, ? extends Collection<String>> map) {
+        StringBuilder builder = new StringBuilder("{");
+        for (Map.Entry<String, ? extends Collection<String>> entry : map.entrySet()) {
+            if (builder.length() > 1) {
+                builder.append(',');
+            }
+            builder.append(quote(entry.getKey())).append(':').append(toJson(entry.getValue()));
+        }
+
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Scrive una stringa JSON, con le virgolette e i caratteri di escape.
+     * 
+     * @param value La stringa da scrivere.
+     * @return la stringa JSON, oppure <code>null</code> se la stringa e'
+     *         <code>null</code>
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder builder = new StringBuilder(value.length() + 2);
+        builder.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                builder.append("\\\"");
+                break;
+            case '\\':
+                builder.append("\\\\");
+                break;
+            case '\n':
+                builder.append("\\n");
+                break;
+            case '\r':
+                builder.append("\\r");
+                break;
+            case '\t':
+                builder.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    builder.append(String.format("\\u%04x", (int) c));
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+
+    private static List<String> getTags(SnippetHeader snippet) {
+        ArrayList<String> tags = new ArrayList<String>();
+        for (String tag : snippet.getTags()) {
+            if (tag != null && tag.trim().length() > 0) {
+                tags.add(tag);
+            }
+        }
+
+        return tags;
+    }
+
+    private Object readValue() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("unexpected end of document");
+        }
+
+        char c = text.charAt(position);
+        switch (c) {
+        case '{':
+            return readObject();
+        case '[':
+            return readArray();
+        case '"':
+            return readString();
+        case 't':
+            return readLiteral("true", Boolean.TRUE);
+        case 'f':
+            return readLiteral("false", Boolean.FALSE);
+        case 'n':
+            return readLiteral("null", null);
+        default:
+            return readNumber();
+        }
+    }
+
+    private Map<String, Object> readObject() {
+        LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
+        position++;
+
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return map;
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("expected a string");
+            }
+
+            String key = readString();
+            skipWhitespace();
+            expect(':');
+            map.put(key, readValue());
+
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect('}');
+                return map;
+            }
+        }
+    }
+
+    private List<Object> readArray() {
+        ArrayList<Object> list = new ArrayList<Object>();
+        position++;
+
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return list;
+        }
+
+        while (true) {
+            list.add(readValue());
+
+            skipWhitespace();
+            if (peek() == ',') {
+                position++;
+            } else {
+                expect(']');
+                return list;
+            }
+        }
+    }
+
+    private String readString() {
+        StringBuilder builder = new StringBuilder();
+        position++;
+
+        while (true) {
+            if (position >= text.length()) {
+                throw error("unterminated string");
+            }
+
+            char c = text.charAt(position++);
+            if (c == '"') {
+                return builder.toString();
+            }
+
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            if (position >= text.length()) {
+                throw error("unterminated string");
+            }
+
+            c = text.charAt(position++);
+            switch (c) {
+            case 'b':
+                builder.append('\b');
+                break;
+            case 'f':
+                builder.append('\f');
+                break;
+            case 'n':
+                builder.append('\n');
+                break;
+            case 'r':
+                builder.append('\r');
+                break;
+            case 't':
+                builder.append('\t');
+                break;
+            case 'u':
+                if (position + 4 > text.length()) {
+                    throw error("invalid escape sequence");
+                }
+                try {
+                    builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                } catch (NumberFormatException ex) {
+                    throw error("invalid escape sequence");
+                }
+                position += 4;
+                break;
+            default:
+                builder.append(c);
+            }
+        }
+    }
+
+    private Object readLiteral(String literal, Object value) {
+        if (!text.startsWith(literal, position)) {
+            throw error("unexpected character");
+        }
+
+        position += literal.length();
+        return value;
+    }
+
+    private Double readNumber() {
+        int start = position;
+        while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+            position++;
+        }
+
+        try {
+            return Double.valueOf(text.substring(start, position));
+        } catch (NumberFormatException ex) {
+            throw error("unexpected character");
+        }
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error("expected '" + c + "'");
+        }
+
+        position++;
+    }
+
+    private char peek() {
+        return position < text.length() ? text.charAt(position) : 0;
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + position);
+    }
+
+}
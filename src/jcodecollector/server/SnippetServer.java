@@ -0,0 +1,409 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+
+import jcodecollector.common.bean.Snippet;
+import jcodecollector.data.Controller;
+import jcodecollector.data.DBMS;
+import jcodecollector.data.SearchFilter;
+import jcodecollector.data.SearchHit;
+import jcodecollector.io.ImportPipeline;
+import jcodecollector.util.ExecutorFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Espone gli snippet del database con un'interfaccia HTTP/JSON, in ascolto
+ * solo sull'indirizzo locale. Le operazioni passano per il {@link Controller},
+ * come quelle dell'interfaccia grafica:
+ * <ul>
+ * <li><code>GET /snippets</code>: i nomi degli snippet per categoria;</li>
+ * <li><code>GET /snippets?q=parole&amp;limit=n</code>: la ricerca, con i
+ * risultati ordinati per rilevanza;</li>
+ * <li><code>GET /snippets/nome</code>: lo snippet indicato;</li>
+ * <li><code>POST /snippets</code>: inserisce lo snippet inviato;</li>
+ * <li><code>PUT /snippets/nome</code>: aggiorna lo snippet indicato con i
+ * campi inviati;</li>
+ * <li><code>DELETE /snippets/nome</code>: elimina lo snippet indicato.</li>
+ * </ul>
+ * Ogni richiesta viene gestita in un thread separato (vedi
+ * {@link ExecutorFactory#newThreadPerTaskExecutor(String)}).
+ * <p>
+ * Il server non richiede autenticazione: per impedire che una pagina web
+ * aperta nel browser lo usi (CSRF o DNS rebinding) vengono rifiutate le
+ * richieste con un header <code>Host</code> diverso dall'indirizzo locale e
+ * dalla porta del server, quelle con un header <code>Origin</code> non
+ * locale e gli inserimenti e aggiornamenti non inviati come
+ * <code>application/json</code>.
+ * 
+ * @author Alessandro Cocco
+ */
+public class SnippetServer {
+
+    /** La porta predefinita del server. */
+    public static final int DEFAULT_PORT = 8743;
+
+    /** Il percorso delle risorse. */
+    public static final String CONTEXT = "/snippets";
+
+    /** La dimensione massima del corpo di una richiesta. */
+    private static final int MAX_REQUEST_LENGTH = 64 * 1024 * 1024;
+
+    /** Il server HTTP. */
+    private HttpServer server;
+
+    /** L'esecutore delle richieste. */
+    private ExecutorService executor;
+
+    /**
+     * Crea un server in ascolto sulla porta indicata dell'indirizzo locale.
+     * Il server va avviato con {@link #start()}.
+     * 
+     * @param port La porta del server.
+     * @throws IOException se non e' possibile aprire la porta
+     */
+    public SnippetServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(null), port), 0);
+        server.createContext(CONTEXT, new SnippetHandler(server.getAddress().getPort()));
+
+        executor = ExecutorFactory.newThreadPerTaskExecutor("jcc-http");
+        server.setExecutor(executor);
+    }
+
+    /** Avvia il server. */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Ferma il server, attendendo al massimo il numero di secondi indicato
+     * che le richieste in corso vengano completate.
+     * 
+     * @param delay Il numero massimo di secondi di attesa.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.shutdown();
+    }
+
+    /**
+     * Restituisce l'indirizzo su cui il server e' in ascolto.
+     * 
+     * @return l'indirizzo su cui il server e' in ascolto
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /** Gestisce le richieste sugli snippet. */
+    private static class SnippetHandler implements HttpHandler {
+        private final Controller controller = Controller.getInstance();
+
+        /** I nomi con cui i client locali possono indicare il server. */
+        private final String[] hosts;
+
+        /**
+         * Crea il gestore delle richieste del server in ascolto sulla porta
+         * indicata.
+         * 
+         * @param port La porta del server.
+         */
+        public SnippetHandler(int port) {
+            hosts = new String[] { "localhost:" + port, "127.0.0.1:" + port, "[::1]:" + port };
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                String method = exchange.getRequestMethod();
+                String name = getSnippetName(exchange);
+
+                if (!isLocal(exchange.getRequestHeaders().getFirst("Host"), false)
+                        || (exchange.getRequestHeaders().containsKey("Origin") && !isLocal(exchange.getRequestHeaders().getFirst("Origin"), true))) {
+                    sendError(exchange, 403, "forbidden");
+                    return;
+                }
+
+                if ((method.equals("POST") || method.equals("PUT")) && !isJson(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+                    sendError(exchange, 415, "content type must be application/json");
+                    return;
+                }
+
+                if (name == null) {
+                    if (method.equals("GET")) {
+                        list(exchange);
+                    } else if (method.equals("POST")) {
+                        insert(exchange);
+                    } else {
+                        sendError(exchange, 405, "method not allowed");
+                    }
+                } else if (method.equals("GET")) {
+                    get(exchange, name);
+                } else if (method.equals("PUT")) {
+                    update(exchange, name);
+                } else if (method.equals("DELETE")) {
+                    remove(exchange, name);
+                } else {
+                    sendError(exchange, 405, "method not allowed");
+                }
+            } catch (IllegalArgumentException ex) {
+                sendError(exchange, 400, ex.getMessage());
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                sendError(exchange, 500, "internal error");
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void list(HttpExchange exchange) throws IOException {
+            HashMap<String, String> parameters = getParameters(exchange);
+            String query = parameters.get("q");
+
+            if (query == null) {
+                send(exchange, 200, Json.toJson(controller.getCatalog()));
+                return;
+            }
+
+            String[] keywords = query.trim().split("\\s+");
+            if (keywords.length == 0 || keywords[0].length() == 0) {
+                throw new IllegalArgumentException("empty query");
+            }
+
+            int limit = 0;
+            if (parameters.containsKey("limit")) {
+                try {
+                    limit = Integer.parseInt(parameters.get("limit"));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("invalid limit");
+                }
+            }
+
+            ArrayList<SearchHit> hits = DBMS.getInstance().rank(keywords, SearchFilter.getInstance().countSearchTypeEnabled(), limit);
+            if (hits == null) {
+                sendError(exchange, 500, "search failed");
+                return;
+            }
+
+            StringBuilder builder = new StringBuilder("[");
+            for (SearchHit hit : hits) {
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                builder.append("{\"name\":").append(Json.quote(hit.getName()));
+                builder.append(",\"category\":").append(Json.quote(hit.getCategory()));
+                builder.append(",\"score\":").append(hit.getScore()).append('}');
+            }
+
+            send(exchange, 200, builder.append(']').toString());
+        }
+
+        private void get(HttpExchange exchange, String name) throws IOException {
+            Snippet snippet = controller.getSnippet(name);
+            if (snippet == null) {
+                sendError(exchange, 404, "snippet not found");
+                return;
+            }
+
+            send(exchange, 200, Json.toJson(snippet));
+        }
+
+        private void insert(HttpExchange exchange) throws IOException {
+            Snippet snippet = Json.toSnippet(Json.parse(readBody(exchange)), null);
+
+            String error = ImportPipeline.normalize(snippet);
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+
+            if (controller.getSnippetHeader(snippet.getName()) != null) {
+                sendError(exchange, 409, "snippet already exists");
+                return;
+            }
+
+            if (!controller.insertNewSnippet(snippet)) {
+                sendError(exchange, 500, "cannot insert snippet");
+                return;
+            }
+
+            send(exchange, 201, Json.toJson(snippet));
+        }
+
+        private void update(HttpExchange exchange, String name) throws IOException {
+            Snippet oldSnippet = controller.getSnippet(name);
+            if (oldSnippet == null) {
+                sendError(exchange, 404, "snippet not found");
+                return;
+            }
+
+            Snippet newSnippet = Json.toSnippet(Json.parse(readBody(exchange)), oldSnippet);
+
+            String error = ImportPipeline.normalize(newSnippet);
+            if (error != null) {
+                throw new IllegalArgumentException(error);
+            }
+
+            if (!newSnippet.getName().equals(name) && controller.getSnippetHeader(newSnippet.getName()) != null) {
+                sendError(exchange, 409, "snippet already exists");
+                return;
+            }
+
+            if (!controller.updateSnippet(oldSnippet, newSnippet)) {
+                sendError(exchange, 500, "cannot update snippet");
+                return;
+            }
+
+            send(exchange, 200, Json.toJson(newSnippet));
+        }
+
+        private void remove(HttpExchange exchange, String name) throws IOException {
+            if (controller.getSnippetHeader(name) == null) {
+                sendError(exchange, 404, "snippet not found");
+                return;
+            }
+
+            if (!controller.removeSnippet(name)) {
+                sendError(exchange, 500, "cannot remove snippet");
+                return;
+            }
+
+            exchange.sendResponseHeaders(204, -1);
+        }
+
+        /**
+         * Indica se il valore di un header <code>Host</code> o
+         * <code>Origin</code> corrisponde all'indirizzo locale e alla porta
+         * del server.
+         * 
+         * @param value Il valore dell'header (puo' essere <code>null</code>).
+         * @param origin <code>true</code> se il valore e' un'origine, cioe'
+         *        comprende lo schema <code>http://</code>.
+         * @return <code>true</code> se il valore indica il server
+         */
+        private boolean isLocal(String value, boolean origin) {
+            if (value == null) {
+                return false;
+            }
+
+            value = value.trim().toLowerCase(Locale.ENGLISH);
+            if (origin) {
+                if (!value.startsWith("http://")) {
+                    return false;
+                }
+                value = value.substring("http://".length());
+            }
+
+            for (String host : hosts) {
+                if (value.equals(host)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /**
+         * Indica se il tipo indicato in un header <code>Content-Type</code> e'
+         * <code>application/json</code>, con o senza parametri.
+         */
+        private static boolean isJson(String contentType) {
+            if (contentType == null) {
+                return false;
+            }
+
+            int index = contentType.indexOf(';');
+            String type = index < 0 ? contentType : contentType.substring(0, index);
+            return type.trim().equalsIgnoreCase("application/json");
+        }
+
+        /**
+         * Restituisce il nome dello snippet indicato nel percorso della
+         * richiesta, oppure <code>null</code> se la richiesta riguarda
+         * l'intera collezione.
+         */
+        private static String getSnippetName(HttpExchange exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (path.length() <= CONTEXT.length() + 1) {
+                return null;
+            }
+
+            return path.substring(CONTEXT.length() + 1);
+        }
+
+        private static HashMap<String, String> getParameters(HttpExchange exchange) throws UnsupportedEncodingException {
+            HashMap<String, String> parameters = new HashMap<String, String>();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query == null) {
+                return parameters;
+            }
+
+            for (String parameter : query.split("&")) {
+                int index = parameter.indexOf('=');
+                if (index > 0) {
+                    parameters.put(URLDecoder.decode(parameter.substring(0, index), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(index + 1), "UTF-8"));
+                }
+            }
+
+            return parameters;
+        }
+
+        private static String readBody(HttpExchange exchange) throws IOException {
+            InputStream input = exchange.getRequestBody();
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] bytes = new byte[8192];
+
+            int read;
+            while ((read = input.read(bytes)) != -1) {
+                buffer.write(bytes, 0, read);
+                if (buffer.size() > MAX_REQUEST_LENGTH) {
+                    throw new IllegalArgumentException("request too large");
+                }
+            }
+
+            return buffer.toString("UTF-8");
+        }
+
+        private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+            send(exchange, status, "{\"error\":" + Json.quote(message) + "}");
+        }
+
+        private static void send(HttpExchange exchange, int status, String json) throws IOException {
+            byte[] bytes = json.getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+
+            OutputStream output = exchange.getResponseBody();
+            output.write(bytes);
+            output.flush();
+        }
+    }
+
+}
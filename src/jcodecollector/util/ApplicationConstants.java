@@ -26,12 +26,21 @@ public class ApplicationConstants {
     public static final Color UNIFIED_MAC_COLOR = new Color(123, 123, 124);
 
     public static final String JCC_EXTENSION = ".jccp";
+    public static final String JCC_BINARY_EXTENSION = ".jccb";
     public static final int CATEGORY_LENGTH = 50;
     public static final int SNIPPET_NAME_LENGTH = 100;
     public static final int TAG_LENGTH = 50;
     public static final int SYNTAX_NAME_LENGTH = 50;
     public static final int KEYWORD_LENGTH = 50;
-    public static final int CODE_LENGTH = 25000;
+
+    /**
+     * La lunghezza massima del codice di uno snippet accettata dal database
+     * (il codice e' salvato in una colonna CLOB). Il limite dell'editor e'
+     * configurabile (vedi
+     * {@link jcodecollector.data.settings.ApplicationSettings#getCodeLengthLimit()}).
+     */
+    public static final int CODE_LENGTH = 16 * 1024 * 1024;
+
     public static final int COMMENT_LENGTH = 500;
     
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2006-2013 Alessandro Cocco.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package jcodecollector.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Crea gli esecutori usati dai servizi in background dell'applicazione.
+ * 
+ * @author Alessandro Cocco
+ */
+public class ExecutorFactory {
+
+    private ExecutorFactory() {
+        // solo metodi statici
+    }
+
+    /**
+     * Crea un esecutore che avvia un thread per ogni attivita'. Se la JVM
+     * supporta i virtual thread (Java 21 o successivo) viene usato un virtual
+     * thread per attivita', altrimenti un pool di thread daemon che crea i
+     * thread quando servono e li riutilizza finche' restano inattivi per meno
+     * di un minuto.
+     * 
+     * @param name Il prefisso del nome dei thread.
+     * @return l'esecutore creato
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException ex) {
+            // la JVM non supporta i virtual thread
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        return Executors.newCachedThreadPool(newThreadFactory(name));
+    }
+
+    /**
+     * Crea un esecutore con un unico thread daemon, che esegue le attivita'
+     * una alla volta nell'ordine in cui vengono inviate.
+     * 
+     * @param name Il prefisso del nome del thread.
+     * @return l'esecutore creato
+     */
+    public static ExecutorService newSingleThreadExecutor(String name) {
+        return Executors.newSingleThreadExecutor(newThreadFactory(name));
+    }
+
+    /**
+     * Crea una factory di thread daemon numerati.
+     * 
+     * @param name Il prefisso del nome dei thread.
+     * @return la factory creata
+     */
+    public static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}